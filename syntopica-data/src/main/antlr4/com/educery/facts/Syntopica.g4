@@ -7,22 +7,23 @@ import com.educery.cogs.*;
 import static com.educery.utils.Utils.*;
 }
 
-unit      : d=domain ( slist+=statement )* ;
+unit      : d=domain ( statement )* ; // retains no statements
+chunk     : ( statement )* ; // follows the domain header, see FactSplitter
 domain    : DOMAIN Named term=namedTerm Period {buildDomain($ctx);} ;
 statement : 
-( b=breed       {takeBreed($ctx.b);}
+( b=breed 
 | a=alias 
-| f=fact        {takeFact($ctx.f);} 
-) Period 
+| f=fact 
+) Period        {takeStatement($ctx);} 
 ;
 
 alias 
 : a=namedTerm   Assign 
-( b=block       {takeBlock($ctx);}
-| v=values      {takeValues($ctx);}
-| r=record      {takeRecord($ctx);}
-| f=fact        {takeFact($ctx);}
-| n=namedTerm   {takeAlike($ctx);}
+( b=block 
+| v=values 
+| r=record 
+| f=fact 
+| n=namedTerm 
 ) 
 ;
 
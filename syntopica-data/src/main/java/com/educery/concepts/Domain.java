@@ -11,27 +11,61 @@ import static org.apache.commons.lang3.StringUtils.*;
  *
  * <h4>Domain Responsibilities:</h4>
  * <ul>
- * <li>knows the available discourse domains</li>
- * <li>knows the current discourse domain</li>
- * <li>knows the topics within a domain</li>
+ * <li>knows the available discourse domains, and the current one, within each build context</li>
+ * <li>knows the topics within a domain, and the IDs of its topics and selectors (see Symbols)</li>
+ * <li>indexes its facts by the topics they mention, and connects its topics in a graph</li>
  * <li>knows the predicates used within those topics</li>
  * <li>registers the topics and predicates within a domain</li>
+ * <li>merges the topics and predicates staged while parsing a fact file</li>
+ * <li>registers topics and predicates safely from concurrent threads</li>
  * </ul>
  */
 public class Domain implements Registry.KeySource {
 
-    private Domain() { Current = this; }
-    private Domain(String name) { this(); this.name = name; }
-    public static Domain withName(String domainName) { return new Domain(domainName); }
+    private Domain() { }
+    private Domain(String name) { this.name = name; }
+    public static Domain withName(String domainName) { // the new domain becomes current
+        Domain result = new Domain(domainName); scope().current = result; return result; }
     public static Domain named(String... list) { return named(wrap(list)); }
-
-    private static final Registry<Domain> Domains = Registry.empty();
-    public static Domain named(List<String> list) {
-        return Domains.register(Domain.withName(joinWith(Blank, list))); }
-
-    private static Domain Current = Domain.named("default");
-    public static Domain current() { return Current; }
+    public static Domain staged() { return new Domain(); } // neither registered nor current
+    public static Domain staged(String domainName) { return new Domain(domainName); }
+    public static Domain adopt(Domain stage) { // a staged domain becomes registered and current
+        scope().current = stage; scope().domains.register(stage); return stage; }
+    public static Domain find(String domainName) { return scope().domains.getItem(domainName); } // if registered
+    public static void restore(Domain prior) { // drops any (partial) domain named since the prior one was current
+        if (hasSome(BoundDomain.get())) return; // a bound domain gets named in place, see begin
+        Scope scope = scope(); Domain partial = scope.current;
+        if (partial == prior) return;
+        if (scope.domains.getItem(partial.getName()) == partial) scope.domains.remove(partial);
+        scope.current = prior; }
+
+    public static Domain begin(List<String> list) { // names any staged domain bound to the current thread
+        Domain bound = BoundDomain.get();
+        if (hasNo(bound)) return named(list);
+        bound.name = joinWith(Blank, list);
+        return bound; }
+
+    public static Domain named(List<String> list) { // the new domain becomes current
+        Domain result = Domain.withName(joinWith(Blank, list)); scope().domains.register(result); return result; }
+
+    /**
+     * The domains of a build context (see BuildContext), and its current domain.
+     */
+    static class Scope {
+
+        final Registry<Domain> domains = Registry.concurrent();
+        volatile Domain current = domains.register(new Domain(DefaultName));
+
+    } // Scope
+
+    static final String DefaultName = "default";
+    static Scope scope() { return BuildContext.current().part(Scope.class, Scope::new); }
+
+    private static final ThreadLocal<Domain> BoundDomain = new ThreadLocal();
+    public static Domain current() { Domain d = BoundDomain.get(); return hasSome(d) ? d : scope().current; }
     public static Domain getCurrentDomain() { return current(); }
+    public static void bind(Domain domain) { BoundDomain.set(domain); } // binds a domain to the current thread
+    public static void release() { BoundDomain.remove(); }
 
     private static final String ClassName = Domain.class.getSimpleName();
     public static boolean accepts(String selector, List<String> topics) {
@@ -44,7 +78,10 @@ public class Domain implements Registry.KeySource {
         String[] names = getName().split(Blank);
         return join(mapList(wrap(names), n -> capitalize(n.trim())), Blank); }
 
-    private final Registry<Topic> topics = Registry.empty();
+    private final Symbols symbols = new Symbols(this); // the terms of its facts, see Fact
+    public Symbols symbols() { return this.symbols; }
+
+    private final Registry<Topic> topics = Registry.concurrent(); // see getTopic
     public Registry<Topic> topics() { return this.topics; }
     public Registry<Topic> getTopics() { return topics(); }
     public static Topic register(Topic topic) { return current().topics().register(topic); }
@@ -55,20 +92,85 @@ public class Domain implements Registry.KeySource {
         List<Topic> results = select(topics().getItems(), topic -> topic.hasSignificance());
         Collections.sort(results, (a,b) -> a.getTitle().compareTo(b.getTitle())); return results; }
 
-    public Topic getTopic(String topicName) {
-        String aName = Number.asSingular(topicName.trim());
-        return (containsTopic(aName) ? topics().getItem(aName) : register(Topic.named(aName))); }
+    public Topic getTopic(String topicName) { return topicNamed(Number.asSingular(topicName.trim())); }
+    Topic topicNamed(String aName) { // safe for concurrent threads, as the first topic registered wins
+        Topic result = topics().getItem(aName);
+        return hasSome(result) ? result : topics().register(Topic.named(aName)); }
+
+    public void resolveTopics() { // registers every topic named by a fact
+        topics().getItems().forEach(topic -> wrap(topic.getFacts()).forEach(fact -> {
+            for (int index = 0; index < fact.topicCount(); index++) fact.topicAt(index); })); }
 
-    private final Registry<Selector> predicates = Registry.empty();
+    private volatile FactIndex factIndex; // built after parsing, see indexFacts
+    public FactIndex indexFacts() { this.factIndex = FactIndex.from(this); return this.factIndex; }
+    public FactIndex factIndex() { FactIndex result = this.factIndex; return hasSome(result) ? result : indexFacts(); }
+
+    private volatile TopicGraph topicGraph; // built after parsing, see buildGraph
+    public TopicGraph buildGraph() { this.topicGraph = TopicGraph.from(this); return this.topicGraph; }
+    public TopicGraph topicGraph() { TopicGraph result = this.topicGraph; return hasSome(result) ? result : buildGraph(); }
+
+    private final Registry<Selector> predicates = Registry.concurrent();
     public Registry<Selector> predicates() { return this.predicates; }
     public Registry<Selector> getPredicates() { return predicates(); }
-    public Selector registerPredicate(Selector p) { return predicates().register(p); }
+    public Selector registerPredicate(Selector p) { // and gives it an ID, see Symbols
+        Selector result = predicates().register(p); symbols().selectorIdOf(result); return result; }
     public Selector getPredicate(String predicateName) { return predicates().getItem(predicateName); }
-    public static Selector register(Selector predicate) { return current().predicates().register(predicate); }
+    public static Selector register(Selector predicate) { return current().registerPredicate(predicate); }
     public boolean containsPredicate(String predicateName) { return predicates().hasItem(predicateName); }
     public static boolean currentlyHasPredicate(String predicateName) {
         return current().containsPredicate(predicateName); }
 
+    private int conflictCount = 0;
+    public int countConflicts() { return this.conflictCount; }
+    private void conflict(String report) { this.conflictCount++; warn(report); }
+
+    static final String HeaderReport = "conflicting header in %s: Domain named: %s. (keeping: %s)";
+    static final String DefinedReport = "duplicate definition in %s: %s";
+    static final String FactReport = "duplicate fact in %s: %s";
+
+    /**
+     * Merges the topics and predicates of a staged domain into this one, keeping any prior definitions.
+     * @param stage a staged domain
+     * @param sourceName names the source of the staged facts
+     * @return this domain
+     */
+    public Domain merge(Domain stage, String sourceName) {
+        if (!getName().equals(stage.getName())) conflict(format(HeaderReport, sourceName, stage.getName(), getName()));
+        return merge(stage, sourceName, true); }
+
+    /**
+     * Merges the topics and predicates of a staged domain into this one quietly, as if both came from one file.
+     * @param stage a staged domain, e.g., from a later chunk of the same fact file
+     * @return this domain
+     */
+    public Domain absorb(Domain stage) {
+        if (getName().isEmpty()) this.name = stage.getName();
+        return merge(stage, Empty, false); }
+
+    private Domain merge(Domain stage, String sourceName, boolean reports) {
+        stage.predicates().getItems().forEach(p -> registerPredicate(p));
+        stage.topics().getItems().forEach(topic -> merge(topic, sourceName, reports));
+        return this; }
+
+    private void merge(Topic staged, String sourceName, boolean reports) {
+        if (!containsTopic(staged.getTitle())) {
+            topics().register(staged);
+            wrap(staged.getFacts()).forEach(fact -> fact.moveTo(this));
+            return;
+        }
+
+        Topic topic = topics().getItem(staged.getTitle());
+        if (staged.isDefined()) {
+            if (topic.isDefined() && reports) conflict(format(DefinedReport, sourceName, staged.getTitle()));
+            topic.makeDefined();
+        }
+
+        for (Fact fact : staged.getFacts()) {
+            if (!topic.facts().hasItem(fact.getKey())) topic.register(fact.moveTo(this));
+            else if (reports) conflict(format(FactReport, sourceName, fact.getMessage()));
+        }
+    }
+
     private final HashMap<String, String> topicLinks = new HashMap<>();
     public HashMap<String, String> getTopicLinks() { return this.topicLinks; }
 
@@ -0,0 +1,273 @@
+package com.educery.concepts;
+
+import java.io.*;
+import java.util.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import static java.nio.file.StandardCopyOption.*;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.educery.utils.*;
+import static com.educery.utils.Utils.*;
+import static com.educery.utils.Exceptional.*;
+
+/**
+ * Saves a parsed domain in a compact binary form, so that a later run can load the domain without parsing its facts.
+ * A snapshot holds a table of the distinct strings of a domain, and refers to each string by its index.
+ * Then it lists the topic names and predicate selectors in the order of their IDs (see Symbols), so that
+ * a loaded domain assigns them the same IDs. Then it lists the facts (with their topics and selector IDs),
+ * and the topics (with their defined flags and fact indexes), each in the order of its registry.
+ *
+ * <p>A snapshot starts with a format version and the hash of the facts from which it was saved.
+ * A snapshot with another version or hash is stale, and gets ignored. Loading reads the whole file at once,
+ * and decodes it into a staged domain, which gets registered only once decoded.
+ * Saving writes a temporary file, and then moves it over any prior snapshot.</p>
+ *
+ * <h4>DomainSnapshot Responsibilities:</h4>
+ * <ul>
+ * <li>knows a snapshot file, and the hash of the current facts</li>
+ * <li>saves the topics, facts, and predicates of a domain</li>
+ * <li>loads a domain from a snapshot, unless stale</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply a snapshot file and a hash of the facts during construction</li>
+ * <li>save a snapshot only after a parse without errors</li>
+ * </ul>
+ */
+public class DomainSnapshot implements Logging {
+
+    static final int Magic = 0x53594E53; // SYNS
+    static final int Version = 2; // change with the format, or with the model built from facts
+
+    private DomainSnapshot(File snapshotFile, String sourceHash) { this.snapshotFile = snapshotFile; this.sourceHash = sourceHash; }
+    public static DomainSnapshot from(File snapshotFile, String sourceHash) { return new DomainSnapshot(snapshotFile, sourceHash); }
+
+    private final File snapshotFile;
+    public File snapshotFile() { return this.snapshotFile; }
+
+    private final String sourceHash;
+    public String sourceHash() { return this.sourceHash; }
+
+    static final String SaveReport = "saved snapshot of %d topics, %d facts in: %s";
+    public void save(Domain domain) {
+        runLoudly(() -> {
+            Encoder encoder = new Encoder().with(domain);
+            File folder = snapshotFile().getAbsoluteFile().getParentFile();
+            File tempFile = File.createTempFile(snapshotFile().getName(), ".tmp", folder);
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                    out.writeInt(Magic);
+                    out.writeInt(Version);
+                    writeString(out, sourceHash());
+                    out.writeInt(encoder.strings.size());
+                    for (String s : encoder.strings) writeString(out, s);
+                    encoder.body.writeTo(out);
+                }
+                replace(tempFile, snapshotFile());
+            }
+            finally { tempFile.delete(); } // if not moved
+            whisper(format(SaveReport, domain.topics().countItems(), encoder.facts.size(), snapshotFile().getPath()));
+        });
+    }
+
+    static void replace(File tempFile, File file) throws IOException { // so that no reader sees a partial snapshot
+        try { Files.move(tempFile.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING); }
+        catch (AtomicMoveNotSupportedException e) { Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING); } }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes); }
+
+    /**
+     * Encodes the body of a snapshot, collecting its strings.
+     */
+    static class Encoder {
+
+        final ArrayList<String> strings = new ArrayList();
+        final HashMap<String, Integer> stringIndex = new HashMap();
+        final ArrayList<Fact> facts = new ArrayList();
+        final IdentityHashMap<Fact, Integer> factIndex = new IdentityHashMap();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        Encoder with(Domain domain) throws IOException {
+            domain.topics().getItems().forEach(topic -> wrap(topic.getFacts()).forEach(fact -> indexFact(fact)));
+            Symbols symbols = domain.symbols();
+
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeInt(indexString(domain.getName()));
+            out.writeInt(symbols.countSymbols());
+            for (int id = 0; id < symbols.countSymbols(); id++) out.writeInt(indexString(symbols.name(id)));
+            out.writeInt(symbols.countSelectors());
+            for (int id = 0; id < symbols.countSelectors(); id++) {
+                Selector p = symbols.selector(id);
+                out.writeBoolean(domain.containsPredicate(p.getKey()));
+                out.writeInt(p.getValenceCount());
+                writeStrings(out, p.parts());
+            }
+
+            out.writeInt(facts.size());
+            for (Fact fact : facts) {
+                out.writeInt(fact.selectorId());
+                out.writeInt(indexString(fact.definedTopic()));
+                writeStrings(out, fact.getTopicList());
+            }
+
+            out.writeInt(domain.topics().countItems());
+            for (Topic topic : domain.topics().getItems()) {
+                out.writeInt(indexString(topic.getTitle()));
+                out.writeBoolean(topic.isDefined());
+                Fact[] topicFacts = topic.getFacts();
+                out.writeInt(topicFacts.length);
+                for (Fact fact : topicFacts) out.writeInt(factIndex.get(fact));
+            }
+            out.flush();
+            return this;
+        }
+
+        void writeStrings(DataOutputStream out, List<String> list) throws IOException {
+            out.writeInt(list.size());
+            for (String s : list) out.writeInt(indexString(s)); }
+
+        int indexString(String s) {
+            Integer result = stringIndex.get(s);
+            if (hasSome(result)) return result;
+            stringIndex.put(s, strings.size());
+            strings.add(s);
+            return strings.size() - 1; }
+
+        void indexFact(Fact fact) {
+            if (factIndex.containsKey(fact)) return; // an alias topic shares its fact
+            factIndex.put(fact, facts.size());
+            facts.add(fact); }
+
+    } // Encoder
+
+    static final String StaleReport = "ignored stale snapshot: %s";
+    static final String CorruptReport = "ignored corrupt snapshot: %s (%s)";
+    static final String LoadReport = "loaded snapshot of %d topics, %d facts in %d ms";
+
+    /**
+     * Loads a domain from this snapshot, which then becomes the current domain.
+     * @return a new domain, or null if the snapshot is missing, stale, or corrupt (reported with a warning)
+     */
+    public Domain loadDomain() {
+        if (!snapshotFile().exists()) return null;
+        long start = System.currentTimeMillis();
+        ByteBuffer buffer = nullOrTryLoudly(() -> readSnapshot());
+        if (hasNo(buffer)) return null;
+        if (!isCurrent(buffer)) { whisper(format(StaleReport, snapshotFile().getPath())); return null; }
+
+        Decoder decoder;
+        try { decoder = new Decoder(buffer).readDomain(); }
+        catch (RuntimeException ex) { // a corrupt snapshot leaves no domain behind
+            warn(format(CorruptReport, snapshotFile().getPath(), ex));
+            return null;
+        }
+        Domain.adopt(decoder.domain);
+        whisper(format(LoadReport, decoder.domain.topics().countItems(), decoder.facts.length, System.currentTimeMillis() - start));
+        decoder.domain.dump();
+        return decoder.domain;
+    }
+
+    private boolean isCurrent(ByteBuffer buffer) {
+        if (buffer.remaining() < 8 || buffer.getInt() != Magic || buffer.getInt() != Version) return false;
+        return defaultOrTryQuietly(() -> sourceHash().equals(readString(buffer)), false); }
+
+    private ByteBuffer readSnapshot() throws IOException { // in one read, where possible
+        try (FileChannel channel = FileChannel.open(snapshotFile().toPath(), READ)) {
+            ByteBuffer result = ByteBuffer.allocate((int) channel.size());
+            while (result.hasRemaining() && channel.read(result) >= 0) { }
+            result.flip();
+            return result;
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = readCount(buffer, 1);
+        String result = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return result; }
+
+    /**
+     * Reads a count of items, each of which takes at least some bytes, so that a corrupt count fails before allocating.
+     */
+    static int readCount(ByteBuffer buffer, int minimumBytes) {
+        int result = buffer.getInt();
+        if (result < 0 || result > buffer.remaining() / minimumBytes) throw new IllegalStateException("bad count: " + result);
+        return result; }
+
+    static int readIndex(ByteBuffer buffer, Object[] items) {
+        int result = buffer.getInt();
+        if (result < 0 || result >= items.length) throw new IllegalStateException("bad index: " + result);
+        return result; }
+
+    /**
+     * Decodes the body of a snapshot, and restores its domain.
+     * Reports a corrupt body with an (unchecked) exception.
+     */
+    static class Decoder {
+
+        final ByteBuffer buffer;
+        Decoder(ByteBuffer buffer) { this.buffer = buffer; }
+
+        String[] strings;
+        Selector[] selectors;
+        Fact[] facts;
+        Domain domain;
+
+        Decoder readDomain() {
+            strings = new String[readCount(buffer, 4)];
+            for (int index = 0; index < strings.length; index++) strings[index] = readString(buffer);
+            domain = Domain.staged(string()); // adopted only once decoded
+            Domain.bind(domain);
+            try { return readBody(); }
+            finally { Domain.release(); }
+        }
+
+        private Decoder readBody() {
+            int symbolCount = readCount(buffer, 4);
+            for (int index = 0; index < symbolCount; index++) domain.symbols().idOf(string()); // in the order of their IDs
+
+            selectors = new Selector[readCount(buffer, 9)];
+            for (int index = 0; index < selectors.length; index++) {
+                boolean registered = buffer.get() != 0;
+                int valenceCount = buffer.getInt();
+                selectors[index] = Selector.restored(readStrings(), valenceCount);
+                if (registered) domain.registerPredicate(selectors[index]);
+                else domain.symbols().selectorIdOf(selectors[index]);
+            }
+
+            facts = new Fact[readCount(buffer, 12)];
+            for (int index = 0; index < facts.length; index++) {
+                int selector = domain.symbols().selectorIdOf(selectors[readIndex(buffer, selectors)]);
+                String definedTopic = string();
+                facts[index] = new Fact(domain, selector, readStrings(), definedTopic);
+            }
+
+            int topicCount = readCount(buffer, 9);
+            for (int index = 0; index < topicCount; index++) {
+                Topic topic = domain.topics().register(Topic.restored(string()));
+                if (buffer.get() != 0) topic.makeDefined();
+                int factCount = readCount(buffer, 4);
+                for (int count = 0; count < factCount; count++) topic.register(facts[readIndex(buffer, facts)]);
+            }
+            return this;
+        }
+
+        List<String> readStrings() {
+            int count = readCount(buffer, 4);
+            List<String> results = new ArrayList(count);
+            for (int index = 0; index < count; index++) results.add(string());
+            return results; }
+
+        String string() { return strings[readIndex(buffer, strings)]; }
+
+    } // Decoder
+
+} // DomainSnapshot
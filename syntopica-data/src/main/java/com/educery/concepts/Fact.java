@@ -12,8 +12,8 @@ import static com.educery.utils.LineBuilder.*;
  *
  * <h4>Fact Responsibilities:</h4>
  * <ul>
- * <li>knows the predicate from which it was derived</li>
- * <li>knows the topics associated with this fact, esp. its subject</li>
+ * <li>knows the predicate from which it was derived (by ID)</li>
+ * <li>knows the topics associated with this fact (by ID), esp. its subject</li>
  * <li>knows the placement of each topic within the predicate</li>
  * <li>formats XHTML fragments</li>
  * <li>creates facts from messages</li>
@@ -23,14 +23,21 @@ public class Fact implements Registry.KeySource, Logging {
 
     // prevents inappropriate external construction.
     private Fact() { this.domain = Domain.current(); }
-    public Fact(Selector p) { this(); this.predicate = p; }
+    public Fact(Selector p) { this(); this.selector = symbols().selectorIdOf(p); }
     public Fact with(String... topics) { return this.with(wrap(topics)); }
-    public Fact with(List<String> topics) { topics().addAll(checkTopics(topics)); register(); return this; }
+    public Fact with(List<String> topics) { addTerms(symbols().termsOf(checkTopics(topics))); register(); return this; }
+    Fact(Domain domain, int selector, List<String> topics, String definedTopic) { // restores a fact, see DomainSnapshot
+        this.domain = domain; this.selector = selector; this.terms = symbols().termsOf(topics); this.definedTopic = definedTopic; }
 
-    private final Domain domain;
+    private Domain domain;
     public Domain domain() { return this.domain; }
+    Fact moveTo(Domain domain) { // and maps its IDs to those of the domain
+        if (domain == this.domain) return this;
+        this.selector = domain.symbols().selectorIdFrom(this.selector, symbols());
+        this.terms = domain.symbols().termsFrom(this.terms);
+        this.domain = domain; return this; }
     public Domain getDomain() { return domain(); }
-    private void register() { domain().getTopic(mainTopic()).register(this); }
+    private void register() { topicAt(0).register(this); }
 
     private List<String> checkTopics(List<String> topics) { // no empty topics!
         List<String> results = select(topics, item -> !(item.trim().isEmpty()));
@@ -38,8 +45,9 @@ public class Fact implements Registry.KeySource, Logging {
 //        if (results.size() > getValenceCount()) throw reportExcessiveTopics();
         return results; }
 
-    private Selector predicate;
-    public Selector predicate() { return this.predicate; }
+    private int selector; // see Symbols
+    public int selectorId() { return this.selector; }
+    public Selector predicate() { return symbols().selector(this.selector); }
     public Selector getPredicate() { return predicate(); }
     public String getVerb() { return predicate().getVerb(); }
 
@@ -49,17 +57,36 @@ public class Fact implements Registry.KeySource, Logging {
     public boolean defines(Topic topic) { return isDefined() && definedTopic().equals(topic.getTitle()); }
 
     static final String[] NoTopics = { };
-    private final ArrayList<String> topics = new ArrayList();
-    public int topicCount() { return topics().size(); }
-    private List<String> topics() { return this.topics; }
+    static final Symbols.Term[] NoTerms = { };
+    private Symbols.Term[] terms = NoTerms; // the topic terms as written, with their topic IDs, see Symbols
+    public int topicCount() { return this.terms.length; }
+    private Symbols symbols() { return domain().symbols(); }
+    private void addTerms(Symbols.Term[] terms) {
+        Symbols.Term[] results = Arrays.copyOf(this.terms, this.terms.length + terms.length);
+        System.arraycopy(terms, 0, results, this.terms.length, terms.length);
+        this.terms = results; }
+
+    private ArrayList<String> topics() {
+        ArrayList<String> results = new ArrayList(topicCount());
+        for (int index = 0; index < topicCount(); index++) results.add(getTopic(index));
+        return results; }
+
     public String[] getTopics() { return unwrap(topics(), NoTopics); }
-    public ArrayList<String> getTopicList() { return copyList(topics()); }
+    public ArrayList<String> getTopicList() { return topics(); }
 
     public String mainTopic() { return getTopic(0); }
-    public String getTopic(int index) { return topics().get(index); }
-    public List<String> getRelatedSubjects() { return map(topics(), item -> Number.asSingular(item)); }
+    public String getTopic(int index) { return this.terms[index].text; }
+    public int topicIdAt(int index) { return this.terms[index].topic; }
+    public Topic topicAt(int index) { return symbols().topic(topicIdAt(index)); }
+    public Number numberAt(int index) { return this.terms[index].number; }
+    public String articleAt(int index) { return this.terms[index].article; }
+    public List<String> getRelatedSubjects() {
+        List<String> results = new ArrayList(topicCount());
+        for (int index = 0; index < topicCount(); index++) results.add(symbols().name(topicIdAt(index)));
+        return results; }
+
     public List<String> namedElements() { // collect all named topics
-        return buildList(names -> { topics().forEach(topic -> names.addAll(Topic.namesFrom(topic))); }); }
+        return buildList(names -> { for (int index = 0; index < topicCount(); index++) names.addAll(this.terms[index].names); }); }
 
     public String getSentence() { return getMessage().replace(Colon, Empty); }
     public String getMessage() { return buildMessage().trim() + Period; }
@@ -151,14 +178,14 @@ public class Fact implements Registry.KeySource, Logging {
 
     public String formatRefLinks() {
         return build(b -> {
-            getTopicList().forEach((subject) -> {
+            for (int index = 0; index < topicCount(); index++) {
                 if (b.hasSome()) b.newLine();
-                b.tie(getDomain().getTopic(subject).formatRefLink());
-            });
-            getTopicList().forEach((subject) -> {
+                b.tie(topicAt(index).formatRefLink());
+            }
+            for (int index = 0; index < topicCount(); index++) {
                 if (b.hasSome()) b.newLine();
-                b.tie(getDomain().getTopic(subject).formatRefLink(Number.PluralNumber));
-            });
+                b.tie(topicAt(index).formatRefLink(Number.PluralNumber));
+            }
         });
     }
 
@@ -0,0 +1,76 @@
+package com.educery.concepts;
+
+import java.util.*;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Indexes the facts of a domain by each topic they mention, so that a topic page can list the facts
+ * that refer to its topic (e.g., governor governs: business. on the business page), without scanning every fact.
+ * Gets built in one pass over the facts of a domain, after parsing (see Domain.indexFacts).
+ *
+ * <h4>FactIndex Responsibilities:</h4>
+ * <ul>
+ * <li>knows the references to each topic, in the order of the topics and facts of its domain</li>
+ * <li>knows the facts that refer to a topic, other than those about the topic itself</li>
+ * </ul>
+ */
+public class FactIndex {
+
+    private FactIndex() { }
+    public static FactIndex from(Domain domain) { return new FactIndex().with(domain); }
+
+    /**
+     * A fact that mentions a topic, and the position of the topic among the terms of the fact.
+     */
+    public static class Reference {
+
+        private final Fact fact; private final int position;
+        Reference(Fact fact, int position) { this.fact = fact; this.position = position; }
+
+        public Fact getFact() { return this.fact; }
+        public int getPosition() { return this.position; }
+        public Topic getSubject() { return this.fact.topicAt(0); }
+
+    } // Reference
+
+    static final List<Reference> NoReferences = Collections.emptyList();
+    private final IdentityHashMap<Topic, List<Reference>> references = new IdentityHashMap();
+    private int factCount = 0;
+    public int countFacts() { return this.factCount; }
+
+    private FactIndex with(Domain domain) {
+        Set<Fact> indexed = Collections.newSetFromMap(new IdentityHashMap()); // an alias topic shares its fact
+        domain.topics().getItems().forEach(topic -> {
+            for (Fact fact : topic.getFacts()) if (indexed.add(fact)) index(fact);
+        });
+        this.factCount = indexed.size();
+        return this; }
+
+    private void index(Fact fact) {
+        for (int position = 0; position < fact.topicCount(); position++) {
+            Topic topic = fact.topicAt(position);
+            List<Reference> list = references.get(topic);
+            if (hasNo(list)) references.put(topic, list = new ArrayList(2));
+            list.add(new Reference(fact, position));
+        }
+    }
+
+    public List<Reference> referencesTo(Topic topic) {
+        List<Reference> results = references.get(topic);
+        return hasSome(results) ? Collections.unmodifiableList(results) : NoReferences; }
+
+    /**
+     * Lists the facts that mention a topic as an argument, other than the facts about that topic.
+     * @param topic a topic
+     * @return the distinct facts that refer to the topic, in index order
+     */
+    public List<Fact> factsReferring(Topic topic) {
+        List<Fact> results = emptyList();
+        for (Reference r : referencesTo(topic)) {
+            Fact fact = r.getFact();
+            if (r.getPosition() > 0 && r.getSubject() != topic // mentioned twice by one fact, listed once
+                && (results.isEmpty() || results.get(results.size() - 1) != fact)) results.add(fact);
+        }
+        return results; }
+
+} // FactIndex
@@ -0,0 +1,190 @@
+package com.educery.concepts;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import com.educery.utils.*;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Converts subjects between their singular and plural forms, and chooses their articles (see Number).
+ * Compiles the suffix rules into tries of reversed suffixes, so that each rule check takes one backwards scan
+ * of a subject, without trimming or lower-casing a copy of it. Remembers its recent results in bounded caches,
+ * which several threads may share. Also knows any irregular forms (e.g., person and people) given by its users,
+ * which take precedence over the suffix rules.
+ *
+ * <p>Each build context has its own inflector (see BuildContext), so the irregular forms of one model
+ * do not affect another built in the same JVM.</p>
+ *
+ * <h4>Inflector Responsibilities:</h4>
+ * <ul>
+ * <li>knows the plural endings, and the suffix replacements of each number</li>
+ * <li>knows the irregular forms, by singular and by plural</li>
+ * <li>converts a subject to its singular or plural form</li>
+ * <li>knows the proper article for a subject</li>
+ * </ul>
+ */
+public class Inflector implements Logging {
+
+    private Inflector() { }
+    public static Inflector create() { return new Inflector(); }
+    public static Inflector current() { return BuildContext.current().part(Inflector.class, Inflector::create); }
+
+    static final String Plural = "s";
+    static final String[] PluralEnds = {
+        "aes", "bs", "cs", "ds", "es",
+        "fs", "gs", "hs", "ies", "js",
+        "ks", "ls", "ms", "ns", "oes",
+        "ps", "qs", "rs", "sses", "ts",
+        "ues", "vs", "ws", "xes", "ays", "zs",
+    };
+
+    static final String[][] PluralReplacements = { { "sses", "ss" }, { "ues", "ue" }, { "ies", "y" }, { "ays", "ay" }, };
+    static final String[][] SingularReplacements = { { "ss", "sses" }, { "ue", "ues" }, { "ay", "ays" }, { "y", "ies" }, };
+
+    static final SuffixTrie Ends = SuffixTrie.from(PluralEnds, null);
+    static final SuffixTrie Plurals = SuffixTrie.from(PluralReplacements);
+    static final SuffixTrie Singulars = SuffixTrie.from(SingularReplacements);
+
+    /**
+     * Matches the suffixes of a subject, in one scan from its end.
+     */
+    static class SuffixTrie {
+
+        static final int Letters = 26;
+        static class Node { final Node[] next = new Node[Letters]; String suffix; String replacement; }
+        final Node root = new Node();
+
+        static SuffixTrie from(String[][] rules) {
+            SuffixTrie result = new SuffixTrie();
+            for (String[] rule : rules) result.add(rule[0], rule[1]);
+            return result; }
+
+        static SuffixTrie from(String[] suffixes, String replacement) {
+            SuffixTrie result = new SuffixTrie();
+            for (String suffix : suffixes) result.add(suffix, replacement);
+            return result; }
+
+        void add(String suffix, String replacement) {
+            Node node = root;
+            for (int index = suffix.length() - 1; index >= 0; index--) {
+                int letter = suffix.charAt(index) - 'a';
+                if (hasNo(node.next[letter])) node.next[letter] = new Node();
+                node = node.next[letter];
+            }
+            node.suffix = suffix;
+            node.replacement = replacement; }
+
+        /**
+         * Finds the longest suffix that ends a subject (before its end).
+         * @param subject a subject
+         * @param end the end of the subject, excluding any trailing blanks
+         * @param ignoreCase whether to match upper case letters
+         * @return the node of the suffix, or null
+         */
+        Node match(String subject, int end, boolean ignoreCase) {
+            Node result = null;
+            Node node = root;
+            for (int index = end - 1; index >= 0; index--) {
+                char c = subject.charAt(index);
+                if (ignoreCase) c = Character.toLowerCase(c);
+                if (c < 'a' || c > 'z') return result;
+                node = node.next[c - 'a'];
+                if (hasNo(node)) return result;
+                if (hasSome(node.suffix)) result = node;
+            }
+            return result; }
+
+    } // SuffixTrie
+
+    static int endOf(String subject) { // excludes any trailing blanks, as trim does
+        int end = subject.length();
+        while (end > 0 && subject.charAt(end - 1) <= ' ') end--;
+        return end; }
+
+    static int startOf(String subject) { // excludes any leading blanks, as trim does
+        int start = 0;
+        while (start < subject.length() && subject.charAt(start) <= ' ') start++;
+        return start; }
+
+    public boolean isSingular(String subject) { return !endsPlurally(subject); }
+    public boolean endsPlurally(String subject) {
+        if (!plurals.isEmpty()) {
+            String key = subject.trim().toLowerCase(); // an irregular form, or neither
+            if (singulars.containsKey(key)) return true;
+            if (plurals.containsKey(key)) return false;
+        }
+        return hasSome(Ends.match(subject, endOf(subject), true)); }
+
+    public String asSingular(String subject) { return remember(singularCache, subject, s -> convertPlural(s.trim())); }
+    public String asPlural(String subject) { return remember(pluralCache, subject, s -> convertSingular(s.trim())); }
+    private static String toPlural(String subject) { return subject.endsWith(Plural) ? subject : subject + Plural; }
+
+    private String convertPlural(String subject) {
+        String irregular = singulars.get(subject.toLowerCase()); // irregular forms are kept in lower case
+        return hasSome(irregular) ? withCaseOf(subject, irregular) : replaceSuffix(Plurals, subject); }
+
+    private String convertSingular(String subject) {
+        String key = subject.toLowerCase();
+        String irregular = plurals.get(key);
+        if (hasSome(irregular)) return withCaseOf(subject, irregular);
+        return singulars.containsKey(key) ? subject : toPlural(replaceSuffix(Singulars, subject)); }
+
+    static String withCaseOf(String subject, String form) { // e.g., People -> Person, PEOPLE -> PERSON
+        if (subject.length() > 1 && subject.equals(subject.toUpperCase())) return form.toUpperCase();
+        if (Character.isUpperCase(subject.charAt(0))) return Character.toUpperCase(form.charAt(0)) + form.substring(1);
+        return form; }
+
+    private String replaceSuffix(SuffixTrie rules, String subject) { // subject is trimmed
+        SuffixTrie.Node rule = rules.match(subject, subject.length(), false);
+        if (hasSome(rule)) return subject.substring(0, subject.length() - rule.suffix.length()) + rule.replacement;
+        return endsPlurally(subject) ? subject.substring(0, subject.length() - 1) : subject; }
+
+    static final String An = "an";
+    static final String Some = "some";
+    static final String[] Articles = { "a", An, Some };
+    static final String Vowelish = "aeiouh";
+    public String getArticle(String subject) { return remember(articleCache, subject, s -> findArticle(s)); }
+    private String findArticle(String subject) {
+        return endsPlurally(subject) ? Articles[2] : needsAn(subject) ? Articles[1] : Articles[0]; }
+
+    public boolean needsAn(String subject) {
+        return Vowelish.indexOf(Character.toLowerCase(subject.charAt(startOf(subject)))) >= 0; }
+
+    private final HashMap<String, String> irregulars = new HashMap(); // singular -> plural, lower case
+    private volatile Map<String, String> plurals = Collections.emptyMap();   // singular -> plural
+    private volatile Map<String, String> singulars = Collections.emptyMap(); // plural -> singular
+
+    /**
+     * Adds an irregular form, which overrides the suffix rules for both its singular and plural.
+     * @param singular a singular form, e.g., person
+     * @param plural its plural form, e.g., people
+     * @return this inflector
+     */
+    public synchronized Inflector withIrregular(String singular, String plural) {
+        irregulars.put(singular.trim().toLowerCase(), plural.trim().toLowerCase());
+        HashMap<String, String> pluralMap = new HashMap(irregulars);
+        HashMap<String, String> singularMap = new HashMap();
+        irregulars.forEach((s, p) -> singularMap.put(p, s));
+        this.plurals = pluralMap;
+        this.singulars = singularMap;
+        forgetAll();
+        return this; }
+
+    public synchronized Map<String, String> irregulars() { return new HashMap(this.irregulars); }
+
+    static final int CacheLimit = 20000; // entries per cache
+    private final ConcurrentHashMap<String, String> singularCache = new ConcurrentHashMap();
+    private final ConcurrentHashMap<String, String> pluralCache = new ConcurrentHashMap();
+    private final ConcurrentHashMap<String, String> articleCache = new ConcurrentHashMap();
+    private void forgetAll() { singularCache.clear(); pluralCache.clear(); articleCache.clear(); }
+
+    private String remember(ConcurrentHashMap<String, String> cache, String subject, Function<String, String> converter) {
+        String result = cache.get(subject);
+        if (hasSome(result)) return result;
+        result = converter.apply(subject);
+        if (cache.size() >= CacheLimit) cache.clear(); // simply starts over, as most subjects recur soon
+        cache.put(subject, result);
+        return result; }
+
+} // Inflector
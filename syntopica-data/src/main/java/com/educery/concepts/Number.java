@@ -1,11 +1,9 @@
 package com.educery.concepts;
 
-import java.util.*;
 import com.educery.utils.*;
-import static com.educery.utils.Utils.*;
 
 /**
- * Converts between singular and plural forms of a subject.
+ * Converts between singular and plural forms of a subject, using the inflector of the current build (see Inflector).
  *
  * <h4>Number Responsibilities:</h4>
  * <ul>
@@ -16,85 +14,23 @@ import static com.educery.utils.Utils.*;
  */
 public class Number implements Logging {
 
-    static final String Plural = "s";
-    static final String[] Plurals = { "sses", "ues", "ies", "ays", };
-    static final String[] Singulars = { "ss", "ue", "ay", "y" };
-    public static final Number PluralNumber = new Number(Plurals);
-    public static final Number SingularNumber = new Number(Singulars);
+    public static final Number PluralNumber = new Number();
+    public static final Number SingularNumber = new Number();
     public static Number getNumber(boolean plural) { return plural ? PluralNumber : SingularNumber; }
-
-    static {
-        PluralNumber.replacements.put("ues", "ue");
-        PluralNumber.replacements.put("ays", "ay");
-        PluralNumber.replacements.put("ies", "y");
-        PluralNumber.replacements.put("sses", "ss");
-        PluralNumber.replacements.put(Empty, Empty);
-
-        SingularNumber.replacements.put("ue", "ues");
-        SingularNumber.replacements.put("ay", "ays");
-        SingularNumber.replacements.put("y", "ies");
-        SingularNumber.replacements.put("ss", "sses");
-        SingularNumber.replacements.put(Empty, Empty);
-    }
+    private Number() { }
 
     public boolean isPlural() { return this == PluralNumber; }
 
+    static Inflector inflector() { return Inflector.current(); }
     public static Number getNumber(String subject) { return isSingular(subject) ? SingularNumber : PluralNumber; }
-    public static boolean isSingular(String subject) { return !endsPlurally(subject); }
-    public static String asSingular(String subject) { return PluralNumber.convert(subject); }
-    public static String asPlural(String subject) { return toPlural(SingularNumber.convert(subject)); }
-    private static String toPlural(String subject) { return subject.endsWith(Plural) ? subject : subject + Plural; }
-
-    private final String[] suffixKeys;
-    private String[] suffixKeys() { return this.suffixKeys; }
-    private Number(String[] keys) { this.suffixKeys = keys; }
-    protected String suffixFrom(String subject) {
-        for (String suffix : suffixKeys()) {
-            if (subject.endsWith(suffix)) {
-                return suffix;
-            }
-        }
-        return Empty; // no suffix found
-    }
-
-    private final HashMap<String, String> replacements = new HashMap();
-    String convert(String subject) { return replaceSuffix(subject.trim()); }
-    private String replaceSuffix(String subject) {
-        String suffix = suffixFrom(subject);
-        if (suffix.isEmpty() && endsPlurally(subject)) {
-            return subject.substring(0, subject.length() - 1);
-        }
-
-        int rootLength = subject.length() - suffix.length();
-        subject = subject.substring(0, rootLength);
-        subject += this.replacements.get(suffix);
-        return subject;
-    }
-
-    static final String[] PluralEnds = {
-        "aes", "bs", "cs", "ds", "es",
-        "fs", "gs", "hs", "ies", "js",
-        "ks", "ls", "ms", "ns", "oes",
-        "ps", "qs", "rs", "sses", "ts",
-        "ues", "vs", "ws", "xes", "ays", "zs",
-    };
-    static final List<String> EndsList = wrap(PluralEnds);
-
-    static final Character[] Vowels = { 'a', 'e', 'i', 'o', 'u', };
-    static final Character[] Vowelish = { 'a', 'e', 'i', 'o', 'u', 'h' };
-    static final List<Character> VowelList = wrap(Vowelish);
-    private static String normal(String s) { return s.trim().toLowerCase(); }
-    private Character head(String s) { return normal(s).charAt(0); }
-    private Character tail(String s) { return s.charAt(s.length() - 1); }
-    public boolean needsAn(String s) { return VowelList.contains(head(s)); }
-    public static boolean endsPlurally(String s) {
-        String norm = normal(s); return matchAny(EndsList, (end) -> norm.endsWith(end)); }
+    public static boolean isSingular(String subject) { return inflector().isSingular(subject); }
+    public static boolean endsPlurally(String s) { return inflector().endsPlurally(s); }
+    public static String asSingular(String subject) { return inflector().asSingular(subject); }
+    public static String asPlural(String subject) { return inflector().asPlural(subject); }
 
-    static final String An = "an";
-    static final String Some = "some";
-    static final String[] Articles = { "a", An, Some };
-    public static String getArticle(String s) { return getNumber(s).getProperArticle(s); }
+    public boolean needsAn(String s) { return inflector().needsAn(s); }
+    public static String getArticle(String s) { return inflector().getArticle(s); }
     public String getProperArticle(String s) {
-        return isPlural() ? Articles[2] : needsAn(s) ? Articles[1] : Articles[0]; }
+        return isPlural() ? Inflector.Articles[2] : needsAn(s) ? Inflector.Articles[1] : Inflector.Articles[0]; }
 
 } // Number
@@ -0,0 +1,94 @@
+package com.educery.concepts;
+
+import java.util.*;
+import com.educery.utils.Logging;
+import static com.educery.utils.Utils.*;
+import static com.educery.concepts.Number.*;
+
+/**
+ * Indexes the reference definitions (e.g., [activity]: activity.md) of the linked topics of a site,
+ * so that each page defines only those references it actually uses, rather than those of every topic.
+ * Gets built once per build, after reading the discussions (which assign the linked references of each topic),
+ * and then scans each rendered page for the reference labels it uses.
+ *
+ * <h4>ReferenceIndex Responsibilities:</h4>
+ * <ul>
+ * <li>knows the singular and plural reference definitions of each topic, and the linked references of each topic</li>
+ * <li>finds the reference labels used by a page (as [text][label], [label][], or [label])</li>
+ * <li>formats the definitions of those labels, in the order of the index</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply the linked topics (sorted) after reading their discussions</li>
+ * </ul>
+ */
+public class ReferenceIndex implements Logging {
+
+    private ReferenceIndex() { }
+    public static ReferenceIndex from(List<Topic> topics) { return new ReferenceIndex().with(topics); }
+
+    private final ArrayList<String> definitions = emptyList();
+    private final HashMap<String, Integer> labels = emptyMap(); // definition index by label, first wins
+    private int linkedStart = 0; // where the linked references start
+    public int countDefinitions() { return this.definitions.size(); }
+
+    private ReferenceIndex with(List<Topic> topics) {
+        topics.forEach(topic -> { define(topic.formatRefLink()); define(topic.formatRefLink(PluralNumber)); });
+        this.linkedStart = this.definitions.size();
+        topics.forEach(topic -> topic.linkedTopics().keySet().forEach(s -> define(topic.formatLinkedReference(s))));
+        return this; }
+
+    private void define(String definition) {
+        String label = normalize(definition.substring(1, definition.indexOf(RightMark)));
+        if (labels.putIfAbsent(label, definitions.size()) == null) definitions.add(definition); }
+
+    static final char LeftMark = '[';
+    static final char RightMark = ']';
+    private static String normalize(String label) { return label.trim().toLowerCase(); } // as markdown does
+
+    /**
+     * Formats the reference definitions used by a page.
+     * @param page the rendered text of a page
+     * @return the definitions of the labels found in the page, with the linked references after a blank line
+     */
+    public String formatReferences(String page) {
+        int[] used = labelsIn(page).stream().map(label -> labels.get(label))
+            .filter(index -> hasSome(index)).mapToInt(index -> index).sorted().toArray();
+
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < used.length; index++) {
+            if (index > 0) builder.append(NewLine);
+            if (index > 0 && used[index] >= linkedStart && used[index - 1] < linkedStart) builder.append(NewLine);
+            builder.append(definitions.get(used[index]));
+        }
+        return builder.toString(); }
+
+    /**
+     * Finds the reference labels used in some text.
+     * @param text some text
+     * @return the distinct (normalized) labels, whether defined or not
+     */
+    public static Set<String> labelsIn(String text) {
+        HashSet<String> results = new HashSet();
+        int index = 0;
+        while ((index = text.indexOf(LeftMark, index)) >= 0) {
+            int close = text.indexOf(RightMark, index + 1);
+            if (close < 0) break;
+            String label = text.substring(text.lastIndexOf(LeftMark, close) + 1, close); // innermost
+            char next = close + 1 < text.length() ? text.charAt(close + 1) : ' ';
+            if (next == LeftMark) { // [text][label] or [label][]
+                int end = text.indexOf(RightMark, close + 2);
+                if (end < 0) break;
+                String second = text.substring(close + 2, end);
+                results.add(normalize(second.isEmpty() ? label : second));
+                index = end + 1;
+            }
+            else { // [label], unless an inline link or a definition
+                if (next != '(' && next != ':') results.add(normalize(label));
+                index = close + 1;
+            }
+        }
+        return results; }
+
+} // ReferenceIndex
@@ -65,6 +65,13 @@ public class Selector implements Registry.KeySource {
         return result;
     }
 
+    static Selector restored(List<String> parts, int valenceCount) { // see DomainSnapshot
+        Selector result = new Selector();
+        result.valenceCount = valenceCount;
+        result.parts.addAll(parts);
+        return result;
+    }
+
     public boolean isLocked() { return Domain.currentlyHasPredicate(getKey()); }
     public Selector with(String... parts) { return with(wrap(parts)); }
     public Selector with(List<String> parts) {
@@ -98,7 +105,7 @@ public class Selector implements Registry.KeySource {
 
     public Fact buildFact(String subject, String... topics) { return buildFact(wrap(subject, topics)); }
     public Fact buildFact(String subject, List<String> topics) { return buildFact(wrap(subject, topics)); }
-    public Fact buildFact(List<String> topics) { Domain.register(this); return new Fact(this).with(topics); }
+    public Fact buildFact(List<String> topics) { return new Fact(Domain.register(this)).with(topics); } // shares the registered selector
 
     private void reportLockedPredicate() { whisper(getSelector() + " was locked after building a fact"); }
     private static RuntimeException reportMissingVerb() {
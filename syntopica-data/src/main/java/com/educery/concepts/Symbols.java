@@ -0,0 +1,133 @@
+package com.educery.concepts;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Assigns dense int IDs to the topics and selectors of the facts in a domain, so that facts can refer to them by ID.
+ * Keys each topic ID on the singular name of its topic, so that "activity" and "activities" share an ID,
+ * and each selector ID on the selector key. Also keeps one copy of each term (as first written) with
+ * what rendering needs from it: its number and article, and its names.
+ * So the hot paths never singularize a term, or find its topic by name, more than once.
+ *
+ * <p>Several threads may find and assign IDs concurrently (see Domain), so a table assigns each ID under a lock,
+ * after looking for its key without one. IDs start at zero, and get assigned in sequence.
+ * A term and a topic symbol cache only what they know when created (or once resolved), so neither needs a lock.</p>
+ *
+ * <h4>Symbols Responsibilities:</h4>
+ * <ul>
+ * <li>knows the topic names and selectors of a domain, and their IDs</li>
+ * <li>assigns an ID to each new topic name and selector</li>
+ * <li>knows the terms written in the facts of a domain, and the topic ID of each</li>
+ * <li>resolves (and caches) the topic with an ID</li>
+ * <li>maps the IDs of another table to its own</li>
+ * </ul>
+ */
+public class Symbols {
+
+    Symbols(Domain domain) { this.domain = domain; } // see Domain.symbols
+    private final Domain domain;
+
+    /**
+     * Assigns a dense ID to each distinct key, and knows the item with each ID.
+     */
+    static class Table<ItemType> {
+
+        static final int InitialSize = 256;
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap();
+        private volatile Object[] items = new Object[InitialSize];
+        private int count = 0; // guarded by this table
+
+        int count() { return this.ids.size(); }
+        ItemType item(int id) { return (ItemType) this.items[id]; }
+        int find(String key) { Integer result = ids.get(key); return hasSome(result) ? result : -1; }
+
+        int idOf(String key, Function<String, ItemType> factory) {
+            Integer result = ids.get(key); return hasSome(result) ? result : assign(key, factory); }
+
+        private synchronized int assign(String key, Function<String, ItemType> factory) {
+            Integer result = ids.get(key);
+            if (hasSome(result)) return result;
+            if (count == items.length) items = Arrays.copyOf(items, count * 2);
+            items[count] = factory.apply(key);
+            ids.put(key, count); // publishes the item
+            return count++; }
+
+    } // Table
+
+    /**
+     * A topic name (singular), and the topic it names, once resolved.
+     */
+    static class Symbol {
+
+        final String name;
+        Symbol(String name) { this.name = name; }
+
+        private volatile Topic topic;
+
+    } // Symbol
+
+    /**
+     * A term, as written in some facts, and what rendering needs from it.
+     */
+    static class Term {
+
+        final String text; final int topic; final Number number; final String article; final List<String> names;
+        Term(String text, int topic) {
+            this.text = text; this.topic = topic;
+            this.number = Number.getNumber(text);
+            this.article = Number.getArticle(text);
+            this.names = Collections.unmodifiableList(Topic.namesFrom(text)); }
+
+    } // Term
+
+    private final Table<Symbol> topics = new Table();
+    private final Table<Selector> selectors = new Table();
+    private final ConcurrentHashMap<String, Term> terms = new ConcurrentHashMap();
+
+    public int countSymbols() { return this.topics.count(); }
+    public int countSelectors() { return this.selectors.count(); }
+    public String name(int id) { return symbol(id).name; }
+    Symbol symbol(int id) { return this.topics.item(id); }
+    public Selector selector(int id) { return this.selectors.item(id); }
+
+    public int idOf(String topicName) { return topics.idOf(topicName, Symbol::new); } // given a singular name
+    public int findSelector(String selectorKey) { return selectors.find(selectorKey); }
+    public int selectorIdOf(Selector p) { return selectors.idOf(p.getKey(), key -> p); } // the first selector wins
+
+    Term term(String text) { // singularizes a term only once
+        Term result = terms.get(text);
+        return hasSome(result) ? result : terms.computeIfAbsent(text, t -> new Term(t, idOf(Number.asSingular(t.trim())))); }
+
+    Term[] termsOf(List<String> texts) {
+        Term[] results = new Term[texts.size()];
+        for (int index = 0; index < results.length; index++) results[index] = term(texts.get(index));
+        return results; }
+
+    /**
+     * Maps the terms of another table to the same terms in this one, with the topic IDs of this table.
+     * @param others some terms from another table
+     * @return the matching terms from this table
+     */
+    Term[] termsFrom(Term[] others) {
+        Term[] results = new Term[others.length];
+        for (int index = 0; index < others.length; index++) results[index] = term(others[index].text);
+        return results; }
+
+    /**
+     * Maps a selector ID of another table to the ID of the same selector key in this one.
+     * @param id a selector ID from another table
+     * @param others the other table
+     * @return the matching ID from this table
+     */
+    public int selectorIdFrom(int id, Symbols others) { return others == this ? id : selectorIdOf(others.selector(id)); }
+
+    public Topic topic(int id) { // safe for concurrent threads, as the first topic registered wins
+        Symbol s = symbol(id);
+        Topic result = s.topic;
+        if (hasNo(result)) s.topic = result = domain.topicNamed(s.name);
+        return result; }
+
+} // Symbols
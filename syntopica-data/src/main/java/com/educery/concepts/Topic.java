@@ -30,6 +30,7 @@ public class Topic implements Registry.KeySource, Logging {
     private String title = Empty; // is singular!
     private Topic(String title) { this.title = title; }
     public static Topic named(String title) { return new Topic(asSingular(title)); }
+    static Topic restored(String title) { return new Topic(title); } // already singular, see DomainSnapshot
     public Topic with(String discussion) { setDiscussion(discussion); return this; }
 
     public String getTitle() { return this.title; }
@@ -67,7 +68,9 @@ public class Topic implements Registry.KeySource, Logging {
     public String formatLinkedReference(String subject) {
         return Tag.linkWith(linkedTopics().get(subject)).withContent(subject).formatReference(); }
 
-    private final Registry<Fact> facts = Registry.empty();
+    // concurrent, as Fact.define registers facts from each thread that builds statements into a shared domain
+    // (see Domain.getTopic), even though a staged parse registers them from one thread
+    private final Registry<Fact> facts = Registry.concurrent();
     public Registry<Fact> facts() { return this.facts; }
     public boolean hasFacts() { return !facts().isEmpty(); }
     public Topic register(Fact f) { facts().register(f); return this; }
@@ -88,8 +91,10 @@ public class Topic implements Registry.KeySource, Logging {
 
     public static final String Text = ".txt";
     public String domainFileName() { return getLinkName() + Text; }
-    public File domainFile() { return new File(Site.getSite().domainFolder(), domainFileName()); }
-    public boolean hasSignificance() { return hasFacts() || domainFile().exists(); }
+    public File domainFile() { BriefIndex.Brief b = brief(); return hasSome(b) ? b.file() : site().briefIndex().fileFor(getLinkName()); }
+    public BriefIndex.Brief brief() { return site().briefIndex().find(getLinkName()); }
+    public boolean hasBrief() { return site().briefIndex().hasBrief(getLinkName()); }
+    public boolean hasSignificance() { return hasFacts() || hasBrief(); }
 
     public String formatPageLink(Number aNumber, String linkBase) {
         return Tag.linkWith(getLinkFileName()).withBase(linkBase).withContent(getTitle(aNumber)).format(); }
@@ -106,14 +111,17 @@ public class Topic implements Registry.KeySource, Logging {
     private String formatLink(String subject) { return formatLinkName(subject) + PageType; }
     public String buildLink(String s) { return Tag.linkWith(formatLink(s)).withContent(s).format(); }
 
+    public List<Fact> getReferringFacts() { return domain().factIndex().factsReferring(this); }
+    public boolean hasReferringFacts() { return !getReferringFacts().isEmpty(); }
+    public String formatBacklink(Fact fact) { return formatFact(fact, Empty, true); } // with its subject
+
     public String formatFact(Fact fact) { return formatFact(fact, Empty); }
-    public String formatFact(Fact fact, String base) {
+    public String formatFact(Fact fact, String base) { return formatFact(fact, base, false); }
+    private String formatFact(Fact fact, String base, boolean withSubject) {
         return build((b) -> {
-            String name = fact.mainTopic();
-            Topic topic = domain().getTopic(name);
-            if (fact.defines(this))
-                b.blankAfterEach(Number.getArticle(name),
-                    topic.formatFactLink(Number.getNumber(name), base));
+            if (withSubject || fact.defines(this))
+                b.blankAfterEach(fact.articleAt(0),
+                    fact.topicAt(0).formatFactLink(fact.numberAt(0), base));
 
             int[] px = { 0 };
             b.tie(Tag.italics(fact.getPredicate().getVerb()).format());
@@ -122,10 +130,8 @@ public class Topic implements Registry.KeySource, Logging {
                     if (index > 1) {
                         b.blankBeforeEach(fact.getPredicate().nextPart(px));
                     }
-                    name = fact.getTopic(index);
-                    topic = domain().getTopic(name);
-                    b.blankBeforeEach(Number.getArticle(name),
-                        topic.formatFactLink(Number.getNumber(name), base));
+                    b.blankBeforeEach(fact.articleAt(index),
+                        fact.topicAt(index).formatFactLink(fact.numberAt(index), base));
                 }
             }
         });
@@ -168,21 +174,11 @@ public class Topic implements Registry.KeySource, Logging {
     }
 
     public String buildDiscussion() {
-        if (!domainFile().exists()) return "";
+        if (!hasBrief()) return "";
 
         // replace known links
-        TopicReader reader = TopicReader.from(domainFile());
-        String text = reader.readDiscussion();
-        List<String> keys = new ArrayList(site().topicLinks().keySet());
-        Collections.sort(keys, (Object o1, Object o2) -> {
-            return o2.toString().length() - o1.toString().length();
-        });
-        for (String subject : keys) {
-            text = fixLeadingSubject(subject, text);
-            text = fixPluralSubject(subject, text);
-            text = fixSubjectLinks(subject, text);
-            text = fixLineBreaks(text);
-        }
+        TopicReader reader = TopicReader.from(brief()); // usually read already, see BriefIndex.prefetch
+        String text = fixLineBreaks(site().linkTopics(reader.readDiscussion()));
 
         // replace assigned links
         Map<String, String> linkMap = reader.getLinkMap();
@@ -194,42 +190,8 @@ public class Topic implements Registry.KeySource, Logging {
         return text;
     }
 
-    private String fixLeadingSubject(String subject, String text) {
-        String cap = capitalize(subject);
-        String capLink = capitalizeLink(subject);
-        // replace leading sentence subject with fixed link
-        if (!text.contains(cap)) return text;
-        if (text.contains(LeftMark + cap)) return text;
-        if (text.contains(cap + RightMark)) return text;
-        return text.replace(cap + Blank, capLink + Blank);
-    }
-
-    private String fixPluralSubject(String subject, String text) {
-        String plural = asPlural(subject);
-        String pluralLink = site().pluralLinks().get(subject);
-        if (!text.contains(plural)) return text;
-        if (text.contains(LeftMark + plural)) return text;
-        if (text.contains(plural + RightMark)) return text;
-        return text.replace(plural, pluralLink);
-    }
-
-    private String fixSubjectLinks(String subject, String text) {
-        return fixSubjectLink(subject, text, site().topicLinks().get(subject));
-    }
-
-    static final String LeftMark = "[";
-    static final String RightMark = "]";
-    private String fixSubjectLink(String subject, String text, String topicLink) {
-        if (!text.contains(subject)) return text;
-        if (text.contains(LeftMark + asPlural(subject))) return text;
-        if (text.contains(LeftMark + asSingular(subject))) return text;
-        if (text.contains(asPlural(subject) + RightMark)) return text;
-        if (text.contains(asSingular(subject) + RightMark)) return text;
-
-        text = text.replace(Blank + subject, Blank + topicLink);
-        text = text.replace(subject + Blank, topicLink + Blank);
-        return text;
-    }
+    public void readLinkedTopics() { // reads assigned links, without building a discussion
+        if (hasBrief()) linkedTopics().putAll(TopicReader.from(brief()).readLinks()); }
 
     private String fixLinkedSubject(String subject, String text) {
         if (text.contains(subject)) {
@@ -248,12 +210,4 @@ public class Topic implements Registry.KeySource, Logging {
         return text;
     }
 
-    private String capitalizeLink(String subject) {
-        String topicLink = site().topicLinks().get(subject);
-        String cap = capitalize(subject);
-        String subStart = LeftMark + subject.charAt(0);
-        String capStart = LeftMark + cap.charAt(0);
-        return topicLink.replace(subStart, capStart);
-    }
-
 } // Topic
@@ -0,0 +1,176 @@
+package com.educery.concepts;
+
+import java.util.*;
+import static com.educery.utils.Utils.*;
+
+/**
+ * An immutable graph of the topics of a domain, connected by their facts, in compressed sparse row (CSR) form.
+ * Numbers the topics of a domain densely (in the order of its registry), and shares the selector IDs of its facts
+ * (see Symbols), and then connects the subject of each fact to each of its other topics, with an edge labelled
+ * by the selector of the fact.
+ * Keeps the edges from each topic (and the edges to each topic) together in primitive arrays,
+ * so that traversals neither find topics by name nor touch any registry.
+ *
+ * <h4>TopicGraph Responsibilities:</h4>
+ * <ul>
+ * <li>knows the topic and selector IDs, and the topics and selectors they identify</li>
+ * <li>knows the edges from each topic, and the edges to each topic, with their selector labels</li>
+ * <li>knows the degree of each topic, its neighbours, and which topics each selector connects</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>build a graph after parsing, as it does not change with its domain</li>
+ * </ul>
+ */
+public class TopicGraph {
+
+    private TopicGraph() { }
+    public static TopicGraph from(Domain domain) { return new TopicGraph().with(domain); }
+
+    /**
+     * Visits the edges of a topic.
+     */
+    public static interface EdgeVisitor {
+
+        void visit(int topic, int selector);
+
+    } // EdgeVisitor
+
+    static final Topic[] NoTopics = { };
+    private Topic[] topics;
+    private Selector[] selectors;
+    private Symbols symbols;
+    private final IdentityHashMap<Topic, Integer> topicIDs = new IdentityHashMap();
+
+    private int[] offsets;   // the edges from topic t: targets[offsets[t]] .. targets[offsets[t + 1] - 1]
+    private int[] targets;
+    private int[] labels;    // the selector of each edge
+    private int[] reverseOffsets; // the edges to topic t: sources[reverseOffsets[t]] ..
+    private int[] sources;
+    private int[] reverseLabels;
+
+    public int countTopics() { return this.topics.length; }
+    public int countSelectors() { return this.selectors.length; }
+    public int countEdges() { return this.targets.length; }
+
+    public Topic topic(int id) { return this.topics[id]; }
+    public Selector selector(int id) { return this.selectors[id]; }
+    public int idOf(Topic topic) { Integer result = topicIDs.get(topic); return hasSome(result) ? result : -1; }
+    public int selectorIdOf(String selectorKey) { int result = symbols.findSelector(selectorKey); return result < countSelectors() ? result : -1; }
+
+    private TopicGraph with(Domain domain) {
+        domain.resolveTopics(); // so that every fact connects registered topics
+        topics = unwrap(domain.topics().getItems(), NoTopics);
+        for (int id = 0; id < topics.length; id++) topicIDs.put(topics[id], id);
+        symbols = domain.symbols();
+        selectors = new Selector[symbols.countSelectors()]; // as the graph does not change with its domain
+        for (int id = 0; id < selectors.length; id++) selectors[id] = symbols.selector(id);
+
+        EdgeList edges = new EdgeList();
+        Set<Fact> visited = Collections.newSetFromMap(new IdentityHashMap()); // an alias topic shares its fact
+        for (Topic topic : topics) for (Fact fact : topic.getFacts()) {
+            if (!visited.add(fact)) continue;
+            int label = fact.selectorId();
+            int source = idOf(fact.topicAt(0));
+            for (int index = 1; index < fact.topicCount(); index++) {
+                int target = idOf(fact.topicAt(index));
+                if (source >= 0 && target >= 0) edges.add(source, target, label);
+            }
+        }
+
+        int[][] forward = compress(edges.sources, edges.targets, edges.labels, edges.count);
+        offsets = forward[0]; targets = forward[1]; labels = forward[2];
+        int[][] reverse = compress(edges.targets, edges.sources, edges.labels, edges.count);
+        reverseOffsets = reverse[0]; sources = reverse[1]; reverseLabels = reverse[2];
+        return this; }
+
+    /**
+     * Collects the edges of a graph, before compressing them.
+     */
+    static class EdgeList {
+
+        int count = 0;
+        int[] sources = new int[16], targets = new int[16], labels = new int[16];
+
+        void add(int source, int target, int label) {
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, count * 2);
+                targets = Arrays.copyOf(targets, count * 2);
+                labels = Arrays.copyOf(labels, count * 2);
+            }
+            sources[count] = source; targets[count] = target; labels[count] = label; count++; }
+
+    } // EdgeList
+
+    private int[][] compress(int[] from, int[] to, int[] label, int count) { // a counting sort, stable by edge order
+        int[] rowOffsets = new int[countTopics() + 1];
+        for (int index = 0; index < count; index++) rowOffsets[from[index] + 1]++;
+        for (int id = 0; id < countTopics(); id++) rowOffsets[id + 1] += rowOffsets[id];
+
+        int[] columns = new int[count];
+        int[] columnLabels = new int[count];
+        int[] next = Arrays.copyOf(rowOffsets, countTopics());
+        for (int index = 0; index < count; index++) {
+            int slot = next[from[index]]++;
+            columns[slot] = to[index];
+            columnLabels[slot] = label[index];
+        }
+        return new int[][] { rowOffsets, columns, columnLabels }; }
+
+    public int outDegree(int topic) { return offsets[topic + 1] - offsets[topic]; }
+    public int inDegree(int topic) { return reverseOffsets[topic + 1] - reverseOffsets[topic]; }
+    public int degree(int topic) { return outDegree(topic) + inDegree(topic); }
+
+    public void forEachTarget(int topic, EdgeVisitor visitor) {
+        for (int edge = offsets[topic]; edge < offsets[topic + 1]; edge++) visitor.visit(targets[edge], labels[edge]); }
+
+    public void forEachSource(int topic, EdgeVisitor visitor) {
+        for (int edge = reverseOffsets[topic]; edge < reverseOffsets[topic + 1]; edge++) visitor.visit(sources[edge], reverseLabels[edge]); }
+
+    /**
+     * Lists the topics connected to a topic by any edge, in either direction.
+     * @param topic a topic ID
+     * @return the distinct neighbour IDs, in ascending order
+     */
+    public int[] neighbours(int topic) {
+        int[] results = new int[degree(topic)];
+        int[] count = { 0 };
+        forEachTarget(topic, (target, label) -> results[count[0]++] = target);
+        forEachSource(topic, (source, label) -> results[count[0]++] = source);
+        Arrays.sort(results);
+        return distinct(results); }
+
+    public List<Topic> neighboursOf(Topic topic) {
+        int id = idOf(topic);
+        if (id < 0) return Collections.emptyList();
+        List<Topic> results = emptyList();
+        for (int neighbour : neighbours(id)) results.add(topic(neighbour));
+        return results; }
+
+    /**
+     * Lists the topics connected by a selector, as the subject or as another topic of some fact.
+     * @param selector a selector ID
+     * @return the distinct topic IDs, in ascending order
+     */
+    public int[] topicsConnectedBy(int selector) {
+        BitSet connected = new BitSet(countTopics());
+        for (int topic = 0; topic < countTopics(); topic++) {
+            for (int edge = offsets[topic]; edge < offsets[topic + 1]; edge++) {
+                if (labels[edge] == selector) { connected.set(topic); connected.set(targets[edge]); }
+            }
+        }
+        return connected.stream().toArray(); }
+
+    private static int[] distinct(int[] sorted) {
+        int count = 0;
+        for (int index = 0; index < sorted.length; index++) {
+            if (index == 0 || sorted[index] != sorted[index - 1]) sorted[count++] = sorted[index];
+        }
+        return Arrays.copyOf(sorted, count); }
+
+    public long countBytes() { // of its arrays, approximately
+        long ints = offsets.length + targets.length + labels.length + reverseOffsets.length + sources.length + reverseLabels.length;
+        return ints * Integer.BYTES + (long) (topics.length + selectors.length) * 8; }
+
+} // TopicGraph
@@ -0,0 +1,227 @@
+package com.educery.concepts;
+
+import java.util.*;
+import java.util.function.Consumer;
+import com.educery.utils.*;
+import static com.educery.utils.Utils.*;
+import static org.apache.commons.lang3.StringUtils.*;
+
+/**
+ * Links the topics mentioned in a discussion.
+ * Compiles the singular, plural, and capitalized names of all topics into a single multi-pattern
+ * (Aho-Corasick) automaton once per build, and then links each discussion in one left-to-right scan.
+ *
+ * <h4>TopicLinker Responsibilities:</h4>
+ * <ul>
+ * <li>knows the names of the linked topics, and their links</li>
+ * <li>links the longest topic name found at each position of a discussion</li>
+ * <li>leaves alone the text inside existing links, tags, and link targets</li>
+ * <li>leaves alone any topic name already linked (as a [name]) by the author of a discussion</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply the singular and plural topic links during construction</li>
+ * </ul>
+ */
+public class TopicLinker implements Logging {
+
+    private TopicLinker() { }
+    public static TopicLinker from(Site site) { return from(site.topicLinks(), site.pluralLinks()); }
+    public static TopicLinker from(Map<String, String> topicLinks, Map<String, String> pluralLinks) {
+        return new TopicLinker().compile(topicLinks, pluralLinks); }
+
+    static final char LeftMark = '[';
+    static final char RightMark = ']';
+    private final ArrayList<String> forms = emptyList(); // pattern text, by pattern index
+    private final ArrayList<String> links = emptyList(); // replacement link, by pattern index
+    private final ArrayList<int[]> guards = emptyList(); // suppressing patterns, by pattern index
+    public int countPatterns() { return this.forms.size(); }
+    public boolean hasPatterns() { return !this.forms.isEmpty(); }
+
+    private TopicLinker compile(Map<String, String> topicLinks, Map<String, String> pluralLinks) {
+        List<String> subjects = new ArrayList(topicLinks.keySet()); // longest subjects first
+        Collections.sort(subjects, (a, b) -> a.length() != b.length() ? b.length() - a.length() : a.compareTo(b));
+        HashMap<String, Integer> patterns = emptyMap();
+        subjects.forEach(subject -> {
+            String link = topicLinks.get(subject);
+            int cap = addPattern(patterns, capitalize(subject), capitalizeLink(subject, link));
+            int plural = addPattern(patterns, Number.asPlural(subject), pluralLinks.get(subject));
+            int single = addPattern(patterns, subject, link);
+            guard(cap, cap); guard(plural, plural); guard(single, plural, single);
+        });
+
+        buildFailures();
+        return this;
+    }
+
+    private int addPattern(Map<String, Integer> patterns, String form, String link) {
+        if (isEmpty(form) || hasNo(link)) return -1;
+        if (patterns.containsKey(form)) return patterns.get(form); // first subject wins
+
+        int index = this.forms.size();
+        this.forms.add(form);
+        this.links.add(link);
+        this.guards.add(NoGuards);
+        patterns.put(form, index);
+        root.insert(form, index);
+        return index;
+    }
+
+    static final int[] NoGuards = { };
+    private void guard(int pattern, int... guardPatterns) {
+        if (pattern < 0 || this.guards.get(pattern) != NoGuards) return; // first subject wins
+        this.guards.set(pattern, Arrays.stream(guardPatterns).filter(p -> p >= 0).toArray()); }
+
+    private static String capitalizeLink(String subject, String topicLink) {
+        if (hasNo(topicLink)) return null;
+        String subStart = LeftMark + subject.substring(0, 1);
+        String capStart = LeftMark + capitalize(subject).substring(0, 1);
+        return topicLink.replace(subStart, capStart); }
+
+    /**
+     * Links the known topics found in some text.
+     * @param text some text
+     * @return the text, with its topic names linked
+     */
+    public String link(String text) {
+        if (!hasPatterns() || isEmpty(text)) return text;
+        Scan scan = new Scan(text);
+        scan.findMatches();
+        return scan.linkMatches();
+    }
+
+    /**
+     * Scans a text for topic names.
+     */
+    class Scan {
+
+        final String text;
+        final int[] skipCounts; // running count of skipped positions
+        final boolean[] linkedForms = new boolean[countPatterns()];
+        final ArrayList<int[]> matches = emptyList(); // { start, end, pattern }
+        Scan(String text) { this.text = text; this.skipCounts = new int[text.length() + 1]; }
+
+        boolean skips(int start, int end) { return skipCounts[end] - skipCounts[start] > 0; }
+        char charAt(int index) { return (index < 0 || index >= text.length()) ? ' ' : text.charAt(index); }
+
+        void findMatches() {
+            Node state = root;
+            int depth = 0;       // nesting of [ ] and < > spans
+            boolean target = false; // inside a link target ( )
+            for (int index = 0; index < text.length(); index++) {
+                char c = text.charAt(index);
+                if (target) { if (c == ')') target = false; }
+                else if (c == LeftMark) depth++;
+                else if (c == RightMark) { if (depth > 0) depth--; target = depth == 0 && charAt(index + 1) == '('; }
+                else if (c == '<' && opensTag(charAt(index + 1))) depth++;
+                else if (c == '>' && depth > 0) depth--;
+
+                boolean skipped = target || depth > 0 || c == RightMark;
+                skipCounts[index + 1] = skipCounts[index] + (skipped ? 1 : 0);
+                state = state.step(c);
+                for (Node n = state.pattern < 0 ? state.output : state; n != null; n = n.output) {
+                    takeMatch(index + 1 - n.depth, index + 1, n.pattern);
+                }
+            }
+        }
+
+        boolean opensTag(char c) { return c == '/' || Character.isLetter(c); }
+        void takeMatch(int start, int end, int pattern) {
+            if (!endsWord(start, end)) return;
+            if (charAt(start - 1) == LeftMark && charAt(end) == RightMark) linkedForms[pattern] = true;
+            else if (!skips(start, end)) matches.add(new int[] { start, end, pattern }); }
+
+        boolean endsWord(int start, int end) {
+            char head = charAt(start - 1);
+            char tail = charAt(end);
+            if (gluesWord(head) || gluesWord(tail)) return false;
+            return (tail != '.') || !Character.isLetterOrDigit(charAt(end + 1)); }
+
+        boolean gluesWord(char c) { return Character.isLetterOrDigit(c) || WordGlue.indexOf(c) >= 0; }
+
+        boolean suppressed(int pattern) {
+            for (int guard : guards.get(pattern)) if (linkedForms[guard]) return true;
+            return false; }
+
+        String linkMatches() {
+            Collections.sort(matches, (a, b) -> a[0] != b[0] ? a[0] - b[0] : b[1] - a[1]); // leftmost, longest
+            StringBuilder b = new StringBuilder(text.length() + matches.size() * 16);
+            int position = 0;
+            for (int[] match : matches) {
+                if (match[0] < position || suppressed(match[2])) continue;
+                b.append(text, position, match[0]);
+                b.append(links.get(match[2]));
+                position = match[1];
+            }
+            b.append(text, position, text.length());
+            return b.toString();
+        }
+
+    } // Scan
+
+    static final String WordGlue = "_-/#@";
+    private final Node root = new Node(0);
+    private void buildFailures() { // breadth first
+        ArrayDeque<Node> queue = new ArrayDeque();
+        root.forEach(n -> { n.fail = root; queue.add(n); });
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (int index = 0; index < node.count; index++) {
+                char c = node.keys[index];
+                Node next = node.nodes[index];
+                Node fail = node.fail;
+                while (fail != root && fail.next(c) == null) fail = fail.fail;
+                Node target = fail.next(c);
+                next.fail = (target == null || target == next) ? root : target;
+                next.output = next.fail.pattern < 0 ? next.fail.output : next.fail;
+                queue.add(next);
+            }
+        }
+    }
+
+    /**
+     * A state of the automaton.
+     */
+    static class Node {
+
+        final int depth;
+        int pattern = -1; // a pattern ends here, if >= 0
+        Node fail;   // longest proper suffix state
+        Node output; // longest proper suffix state that ends a pattern
+
+        int count = 0;
+        char[] keys = new char[2];
+        Node[] nodes = new Node[2];
+        Node(int depth) { this.depth = depth; }
+
+        Node next(char c) {
+            for (int index = 0; index < count; index++) if (keys[index] == c) return nodes[index];
+            return null; }
+
+        Node step(char c) {
+            Node state = this;
+            while (state.depth > 0 && state.next(c) == null) state = state.fail;
+            Node next = state.next(c);
+            return next == null ? state : next; }
+
+        void forEach(Consumer<Node> c) { for (int index = 0; index < count; index++) c.accept(nodes[index]); }
+        void insert(String form, int pattern) {
+            Node node = this;
+            for (char c : form.toCharArray()) node = node.add(c);
+            node.pattern = pattern; }
+
+        Node add(char c) {
+            Node next = next(c);
+            if (next != null) return next;
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                nodes = Arrays.copyOf(nodes, count * 2);
+            }
+            keys[count] = c;
+            nodes[count] = new Node(depth + 1);
+            return nodes[count++]; }
+
+    } // Node
+
+} // TopicLinker
@@ -22,13 +22,20 @@ public class TopicReader extends LineReader {
     public Map<String, String> getLinkMap() { return this.linkMap; }
 
     protected TopicReader(InputStream stream) { super(stream); }
+    protected TopicReader(Reader reader) { super(reader); }
     public static TopicReader with(InputStream stream) { return new TopicReader(stream); }
     public static TopicReader from(File modelFile) { return nullOrTryLoudly(() -> with(new FileInputStream(modelFile))); }
+    public static TopicReader from(BriefIndex.Brief brief) { // streams any brief not prefetched, e.g., to read only its links
+        return brief.isPrefetched() ? new TopicReader(new StringReader(brief.text())) : from(brief.file()); }
 
     private final StringBuilder builder = new StringBuilder();
     private void append(String text) { this.builder.append(text); }
     public String readDiscussion() { builder.setLength(0); readTopic(); return this.builder.toString(); }
     private void readTopic() { readLines(line -> readLine(line)); }
+    public Map<String, String> readLinks() { readLeadingLinks(); return getLinkMap(); }
+    private void readLeadingLinks() { // reads only those links at the start of a file
+        runLoudly(() -> { try (BufferedReader r = reader()) {
+            for (String line = r.readLine(); line != null && readLinks; line = r.readLine()) readLine(line); }}); }
 
     boolean readLinks = true; // true only while reading links from start of file
     private void readTopic(String line) { readLinks = false; append(line.trim()); append(NewLine); }
@@ -0,0 +1,106 @@
+package com.educery.facts;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.educery.concepts.Domain;
+import com.educery.utils.Logging;
+import com.educery.utils.BuildContext;
+import static com.educery.utils.Utils.*;
+import static com.educery.utils.Exceptional.*;
+
+/**
+ * Loads a domain from several fact files.
+ * Parses the files concurrently, each into its own staged domain, and then merges those stages in file order,
+ * so that the resulting domain does not depend on which parser finishes first.
+ * Optionally splits each file into chunks, which get parsed concurrently, and then merged quietly in order.
+ *
+ * <h4>FactLoader Responsibilities:</h4>
+ * <ul>
+ * <li>knows the fact files of a domain, and how many threads parse them</li>
+ * <li>parses each fact file (or each chunk of a fact file) with a staging parser</li>
+ * <li>merges the staged domains into one (see Domain.merge)</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply the fact files during construction, the first of which names the domain</li>
+ * </ul>
+ */
+public class FactLoader implements Logging {
+
+    private FactLoader() { }
+    public static FactLoader from(List<File> factFiles) { return new FactLoader().with(factFiles); }
+
+    private final ArrayList<File> factFiles = emptyList();
+    public List<File> factFiles() { return this.factFiles; }
+    private FactLoader with(List<File> factFiles) { this.factFiles.addAll(factFiles); return this; }
+
+    private int threadCount = 1;
+    public int threadCount() { return this.threadCount; }
+    public FactLoader withThreads(int count) { this.threadCount = Math.max(1, count); return this; }
+
+    private int chunkSize = 0; // bytes per chunk, or 0 for whole files
+    public int chunkSize() { return this.chunkSize; }
+    public boolean splitsFiles() { return this.chunkSize > 0; }
+    public FactLoader withChunks(int chunkSize) { this.chunkSize = Math.max(0, chunkSize); return this; }
+
+    private int errorCount = 0;
+    public int errorCount() { return this.errorCount; }
+
+    static final String LoadReport = "loaded %d fact files (as %d parts) in %d ms";
+    public Domain loadDomain() {
+        long start = System.currentTimeMillis();
+        List<List<FactParser>> fileParsers = mapList(factFiles(), file -> parsersFor(file));
+        List<FactParser> parsers = emptyList();
+        fileParsers.forEach(list -> parsers.addAll(list));
+        parseEach(parsers);
+        errorCount = parsers.stream().mapToInt(parser -> parser.errorCount()).sum();
+
+        Domain result = null;
+        for (List<FactParser> list : fileParsers) {
+            Domain stage = stageFrom(list);
+            if (hasNo(stage)) continue; // failed, already reported
+            if (hasNo(result)) result = Domain.named(stage.getName());
+            result.merge(stage, list.get(0).tokenFile().getName());
+        }
+
+        if (hasNo(result)) return Domain.getCurrentDomain();
+        result.dump();
+        whisper(format(LoadReport, fileParsers.size(), parsers.size(), System.currentTimeMillis() - start));
+        return result;
+    }
+
+    private List<FactParser> parsersFor(File file) {
+        List<FactParser> results = emptyList();
+        if (splitsFiles()) {
+            List<FactSplitter.Chunk> chunks = nullOrTryLoudly(() -> FactSplitter.split(file, chunkSize()));
+            if (hasSome(chunks)) chunks.forEach(chunk -> results.add(new FactParser(file, chunk)));
+        }
+
+        if (results.isEmpty()) results.add(new FactParser(file).staging());
+        return results;
+    }
+
+    private Domain stageFrom(List<FactParser> parsers) { // merges the chunks of a file quietly, in order
+        if (parsers.size() == 1) return parsers.get(0).stage();
+        Domain result = Domain.staged();
+        parsers.forEach(parser -> { if (hasSome(parser.stage())) result.absorb(parser.stage()); });
+        return result;
+    }
+
+    private void parseEach(List<FactParser> parsers) {
+        int count = Math.min(threadCount(), parsers.size());
+        if (count < 2) { parsers.forEach(parser -> parser.parseTokens()); return; }
+
+        BuildContext context = BuildContext.current();
+        ExecutorService pool = Executors.newFixedThreadPool(count);
+        try {
+            List<Future<?>> results = mapList(parsers, parser -> pool.submit(context.within(() -> parser.parseTokens())));
+            results.forEach(result -> runLoudly(() -> result.get()));
+        }
+        finally { pool.shutdown(); }
+    }
+
+} // FactLoader
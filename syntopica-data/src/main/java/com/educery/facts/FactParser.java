@@ -1,16 +1,47 @@
 package com.educery.facts;
 
 import java.io.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.channels.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.charset.CodingErrorAction.REPORT;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import com.educery.utils.Logging;
 import com.educery.concepts.Domain;
+import static com.educery.utils.Utils.*;
 import static com.educery.utils.Exceptional.*;
 
 /**
  * Parses facts from lines in a text file.
  * See grammar file Syntopica.g4 for the grammar.
+ *
+ * <p>A parser reads a fact file as UTF-8 through a MappedCharStream, so the file never gets copied onto the heap.
+ * A parser can also read facts from a stream (e.g., stdin), which gets read once into memory.</p>
+ *
+ * <p>By default, a parser runs lean: the grammar actions (see ParserGlue) build the model as each statement
+ * completes, so the parser builds no parse tree, and releases each token once consumed.
+ * A parser that keeps its tree buffers all the tokens, and offers its tree for tools to walk.</p>
+ *
+ * <p>A parser first tries the faster SLL prediction, bailing out at the first syntax error.
+ * Only if that fails does it parse the whole file again with full LL prediction and the usual error recovery.
+ * The second pass starts with a new domain, so it discards any model built by the first.</p>
+ *
+ * <p>A parser hands each statement to a sink as soon as the statement ends, and by default, that sink builds
+ * the statement into the domain. A parser can send its statements elsewhere, e.g., to stream a large input
+ * through some other consumer. A streaming parser also reads its input without buffering it.</p>
+ *
+ * <p>A parser first scans a fact file with a FactScanner, which recognizes the simple statements directly,
+ * and hands any others to the grammar. Only if the grammar finds an error does the parser parse the whole file.</p>
+ *
+ * <p>A staging parser builds its facts into a private domain (its stage), bound to the parsing thread,
+ * so that several parsers can run concurrently. See FactLoader.
+ * A staging parser may also parse just one chunk of a fact file. See FactSplitter.</p>
  * @author Nik Boyd <nik.boyd@educery.dev>
  */
 public class FactParser implements Logging {
@@ -23,24 +54,204 @@ public class FactParser implements Logging {
     File tokenFile;
     public FactParser(File tokenFile) { this.tokenFile = tokenFile; }
     public String tokenFilepath() { return tokenFile.getAbsolutePath(); }
-    CharStream createInputStream() { return nullOrTryLoudly(() -> new ANTLRFileStream(tokenFilepath())); }
-    TokenSource createLexer() { return new SyntopicaLexer(createInputStream()); }
+    public File tokenFile() { return this.tokenFile; }
 
-    CommonTokenStream tokenStream;
-    public CommonTokenStream tokenStream() { return tokenStream; }
-    CommonTokenStream tokenStream(CommonTokenStream stream) { this.tokenStream = stream; return tokenStream; }
-    TokenStream createTokenStream() { return tokenStream(new CommonTokenStream(createLexer())); }
-    SyntopicaParser createParser() { return new SyntopicaParser(createTokenStream()); }
+    FactSplitter.Chunk chunk; // of a larger fact file
+    public FactParser(File tokenFile, FactSplitter.Chunk chunk) { this(tokenFile); this.chunk = chunk; staging(); }
+    public boolean isChunk() { return hasSome(chunk); }
+
+    CharStream tokenInput; // read once from a stream, then rewound for each parse
+    private FactParser(CharStream tokenInput) { this.tokenInput = tokenInput; }
+    public static FactParser from(InputStream stream, String sourceName) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(stream);
+        return new FactParser(CharStreams.fromChannel(channel, UTF_8, BufferSize, REPORT, sourceName, -1)); }
+
+    /**
+     * Streams facts from an input stream, holding only the current statement in memory.
+     * As a stream cannot be read twice, a streaming parser uses full LL prediction, without SLL first.
+     * @param stream an input stream (e.g., stdin)
+     * @param sourceName names the stream
+     * @return a new streaming parser
+     */
+    public static FactParser streaming(InputStream stream, String sourceName) {
+        UnbufferedCharStream input = new UnbufferedCharStream(stream, BufferSize, UTF_8);
+        input.name = sourceName;
+        return new FactParser(input).withFullPrediction(); }
+
+    static final int BufferSize = 64 * 1024;
+
+    static final String ChunkName = "%s (from line %d)";
+    public String sourceName() {
+        if (isChunk()) return format(ChunkName, tokenFile.getName(), chunk.line());
+        return hasSome(tokenFile) ? tokenFile.getName() : tokenInput.getSourceName(); }
+
+    CharStream createInputStream() throws IOException {
+        if (isChunk()) return MappedCharStream.from(tokenFile, chunk.start(), chunk.end());
+        if (hasNo(tokenInput)) return MappedCharStream.from(tokenFile);
+        if (tokenInput.index() > 0) tokenInput.seek(0);
+        return tokenInput; }
+
+    Lexer lexer;
+    Lexer createLexer() throws IOException {
+        lexer = new SyntopicaLexer(createInputStream());
+        lexer.setTokenFactory(CopyingTokens); // tokens keep no reference to their input
+        if (isChunk()) lexer.setLine(chunk.line()); // reports errors at their lines in the whole file
+        return lexer; }
+
+    static final TokenFactory<CommonToken> CopyingTokens = new CommonTokenFactory(true);
+
+    boolean keepsTree = false;
+    public boolean keepsTree() { return this.keepsTree; }
+    public FactParser keepingTree() { this.keepsTree = true; return this; }
+
+    TokenStream tokenStream;
+    public TokenStream tokenStream() { return tokenStream; }
+    TokenStream tokenStream(TokenStream stream) { this.tokenStream = stream; return tokenStream; }
+    TokenStream createTokenStream() throws IOException {
+        Lexer lexer = createLexer();
+        return tokenStream(keepsTree() ? new CommonTokenStream(lexer) : new UnbufferedTokenStream(new ChannelFilter(lexer))); }
+
+    /**
+     * Passes only the default channel tokens of a lexer (e.g., no comments), which an unbuffered stream does not filter.
+     */
+    static class ChannelFilter implements TokenSource {
+
+        final TokenSource source;
+        ChannelFilter(TokenSource source) { this.source = source; }
+
+        @Override public Token nextToken() {
+            Token result = source.nextToken();
+            while (result.getChannel() != Token.DEFAULT_CHANNEL && result.getType() != Token.EOF) result = source.nextToken();
+            return result; }
+
+        @Override public int getLine() { return source.getLine(); }
+        @Override public int getCharPositionInLine() { return source.getCharPositionInLine(); }
+        @Override public CharStream getInputStream() { return source.getInputStream(); }
+        @Override public String getSourceName() { return source.getSourceName(); }
+        @Override public TokenFactory<?> getTokenFactory() { return source.getTokenFactory(); }
+        @Override public void setTokenFactory(TokenFactory<?> factory) { source.setTokenFactory(factory); }
+
+    } // ChannelFilter
+
+    /**
+     * Counts the syntax errors reported by a lexer and parser.
+     */
+    static class ErrorCounter extends BaseErrorListener {
+
+        int count = 0;
+        @Override public void syntaxError(Recognizer<?, ?> recognizer, Object symbol,
+            int line, int position, String message, RecognitionException ex) { count++; }
+
+    } // ErrorCounter
+
+    ErrorCounter errors; // during the last pass
+    public int errorCount() { return hasSome(errors) ? errors.count : 0; }
+
+    boolean twoStage = true;
+    public boolean twoStage() { return this.twoStage; }
+    public FactParser withFullPrediction() { this.twoStage = false; return this; }
+
+    static final AtomicInteger Fallbacks = new AtomicInteger();
+    public static int countFallbacks() { return Fallbacks.get(); }
+
+    SyntopicaParser createParser() throws IOException {
+        SyntopicaParser result = new SyntopicaParser(createTokenStream());
+        this.errors = new ErrorCounter();
+        result.addErrorListener(errors);
+        lexer.addErrorListener(errors);
+        result.setBuildParseTree(keepsTree());
+        if (sendsElsewhere()) result.sendStatements(passSink());
+        return result; }
+
+    Consumer<Statement> sink; // receives the statements, instead of building them into the domain
+    public boolean sendsElsewhere() { return hasSome(this.sink); }
+    public FactParser sendingTo(Consumer<Statement> sink) { this.sink = sink; return this; }
+
+    int sentCount = 0; // statements already sent, during a prior (bailed) pass
+    Consumer<Statement> passSink() { // skips any statements sent during a prior pass
+        int skipCount = sentCount;
+        int[] passCount = { 0 };
+        return statement -> { if (passCount[0]++ >= skipCount) { sentCount++; sink.accept(statement); } }; }
+
+    SyntopicaParser createFastParser() throws IOException {
+        SyntopicaParser result = createParser();
+        result.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        result.setErrorHandler(new BailErrorStrategy());
+        result.removeErrorListeners(); // the full parse reports any errors
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(LexerBail); // so that any lexer error also falls back to the full parse
+        return result; }
+
+    /**
+     * Cancels a fast pass at its first lexer error, which a bail strategy (for the parser alone) would not see.
+     */
+    static final ANTLRErrorListener LexerBail = new BaseErrorListener() {
+        @Override public void syntaxError(Recognizer<?, ?> recognizer, Object symbol,
+            int line, int position, String message, RecognitionException ex) { throw new ParseCancellationException(message); }
+    };
+
+    boolean scans = true;
+    public boolean scans() { return this.scans && !keepsTree() && hasSome(tokenFile); }
+    public FactParser withoutScanner() { this.scans = false; return this; }
+
+    static final String ScanReport = "scanner deferred %s to the grammar";
+    boolean scanFacts() throws IOException {
+        FactScanner scanner = isChunk() ? FactScanner.from(tokenFile, chunk) : FactScanner.from(tokenFile);
+        Consumer<Statement> sink = sendsElsewhere() ? passSink() : Statement::build;
+        boolean result = onStage(() -> scanner.scanFacts(sink));
+        if (!result) whisper(format(ScanReport, sourceName()));
+        return result; }
+
+    boolean staging = false;
+    public boolean isStaging() { return this.staging; }
+    public FactParser staging() { this.staging = true; return this; }
+
+    Domain stage; // built privately by a staging parser, see Domain.merge
+    public Domain stage() { return this.stage; }
+    public Domain parsedDomain() { return isStaging() ? stage() : Domain.getCurrentDomain(); }
+    ParserRuleContext parseUnit(SyntopicaParser parser) {
+        return onStage(() -> isChunk() && !chunk.hasHeader() ? parser.chunk() : parser.unit()); }
+
+    <T> T onStage(Supplier<T> pass) {
+        if (!isStaging()) return pass.get();
+        this.stage = Domain.staged(); // each pass begins with a new stage
+        Domain.bind(stage());
+        try { return pass.get(); }
+        finally { Domain.release(); } }
 
     SyntopicaParser parser;
-    public boolean wasParsed() { return parser != null; }
-    public boolean notParsed() { return parser == null; }
+    ParseTree parseTree;
+    public ParseTree parseTree() { return this.parseTree; }
+
+    boolean parsed = false;
+    public boolean wasParsed() { return this.parsed; }
+    public boolean notParsed() { return !this.parsed; }
     public void parseTokens() { if (wasParsed()) return; runLoudly(() -> parseUnit()); }
-    void parseUnit() {
-        parser = createParser();
-        ParseTreeWalker walker = new ParseTreeWalker();
-        walker.walk(new SyntopicaBaseListener(), parser.unit());
-        Domain.getCurrentDomain().dump();
+    void parseUnit() throws IOException {
+        parsed = true;
+        Domain prior = Domain.current();
+        if (scans() && scanFacts()) { dumpDomain(); return; }
+        dropPartial(prior);
+        ParserRuleContext unit = twoStage() ? parseFast() : null;
+        if (hasNo(unit)) { dropPartial(prior); parser = createParser(); unit = parseUnit(parser); }
+        if (keepsTree()) this.parseTree = unit;
+        dumpDomain();
+    }
+
+    void dropPartial(Domain prior) { // any domain named by a deferred (or bailed) pass, which the next pass names again
+        if (!isStaging()) Domain.restore(prior); }
+
+    void dumpDomain() { if (!isChunk() && !sendsElsewhere()) parsedDomain().dump(); }
+
+    static final String FallbackReport = "fell back to full LL prediction for %s";
+    ParserRuleContext parseFast() throws IOException {
+        parser = createFastParser();
+        try { return parseUnit(parser); }
+        catch (ParseCancellationException ex) {
+            Fallbacks.incrementAndGet();
+            whisper(format(FallbackReport, sourceName()));
+            return null;
+        }
     }
 
 } // FactParser
@@ -0,0 +1,310 @@
+package com.educery.facts;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import com.educery.concepts.Domain;
+import com.educery.utils.Logging;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Scans the simple statements of a fact file directly, without the lexer and parser generated from the grammar.
+ * Recognizes the usual forms of facts (subject verb: a, b prep: c.), breeds (kind -> base.),
+ * and aliases (name := twin. or name := subject verb: a.), and hands any other statement to the grammar.
+ * Scans the mapped bytes of the file, as the simple forms contain only ASCII outside their comments.
+ *
+ * <p>A scanner builds the same statements as the grammar actions (see ParserGlue), and sends them to the same sink.
+ * It gives up (so the whole file gets parsed by the grammar) if the grammar finds any error in a statement
+ * handed to it, so that all syntax errors get reported just as before.</p>
+ *
+ * <h4>FactScanner Responsibilities:</h4>
+ * <ul>
+ * <li>knows the bytes of a fact file (or a chunk of one), and the current token and line</li>
+ * <li>recognizes the domain header and the simple statements, and sends each to a sink</li>
+ * <li>hands each other statement to the grammar, and resumes after its Period</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply a fact file (or a chunk of one) during construction</li>
+ * <li>parse the file with the grammar, if the scanner gives up</li>
+ * </ul>
+ */
+public class FactScanner implements Logging {
+
+    public static FactScanner from(File file) throws IOException { return from(file, null); }
+    public static FactScanner from(File file, FactSplitter.Chunk chunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            long start = hasSome(chunk) ? chunk.start() : 0;
+            long end = hasSome(chunk) ? chunk.end() : channel.size();
+            if (end - start > Integer.MAX_VALUE) throw new IOException(String.format(MappedCharStream.SizeReport, file.getPath()));
+            ByteBuffer bytes = channel.map(READ_ONLY, start, end - start);
+            return new FactScanner(bytes, file.getPath(), hasSome(chunk) ? chunk.line() : 1, start == 0);
+        }
+    }
+
+    private FactScanner(ByteBuffer bytes, String sourceName, int line, boolean header) {
+        this.bytes = bytes;
+        this.limit = bytes.limit();
+        this.sourceName = sourceName;
+        this.line = line;
+        this.header = header;
+        this.at = header && hasMark() ? 3 : 0;
+    }
+
+    private final ByteBuffer bytes;
+    private final int limit;
+    private final String sourceName;
+    private final boolean header; // whether the scan starts with the domain header
+
+    private int at;   // byte offset of the next token
+    private int line; // line of the next token
+
+    static final AtomicInteger Handoffs = new AtomicInteger();
+    public static int countHandoffs() { return Handoffs.get(); }
+
+    private Consumer<Statement> sink;
+
+    /**
+     * Scans all the statements, sending each to a sink.
+     * @param sink receives each statement, as it ends
+     * @return whether the scan succeeded, else the whole file needs parsing by the grammar
+     */
+    public boolean scanFacts(Consumer<Statement> sink) {
+        this.sink = sink;
+        advance();
+        if (header && !scanHeader()) return false;
+        while (token != Lexeme.End) {
+            int start = tokenAt;
+            int startLine = tokenLine;
+            if (!scanStatement() && !handOff(start, startLine)) return false;
+        }
+        return true;
+    }
+
+    private boolean scanHeader() {
+        if (token != Lexeme.Header) return false;
+        advance();
+        if (token != Lexeme.Named) return false;
+        advance();
+        String name = scanTerm();
+        if (hasNo(name) || token != Lexeme.Period) return false;
+        advance();
+        Domain.begin(Arrays.asList(name));
+        return true;
+    }
+
+    private boolean scanStatement() {
+        int line = tokenLine;
+        String subject = scanTerm();
+        if (hasNo(subject)) return false;
+        if (token == Lexeme.Keyword) return scanFact(line, subject, null);
+        if (token == Lexeme.Extends) {
+            advance();
+            String base = scanTerm();
+            if (hasNo(base) || token != Lexeme.Period) return false;
+            advance();
+            sink.accept(Statement.breed(line, subject, base));
+            return true;
+        }
+
+        if (token != Lexeme.Assign) return false;
+        advance();
+        String twin = scanTerm(); // or the subject of a fact
+        if (hasNo(twin)) return false; // a block, values, or record
+        if (token == Lexeme.Keyword) return scanFact(line, twin, subject);
+        if (token != Lexeme.Period) return false;
+        advance();
+        sink.accept(Statement.twin(line, subject, twin));
+        return true;
+    }
+
+    private boolean scanFact(int line, String subject, String alias) {
+        ArrayList<String> parts = new ArrayList(4);
+        ArrayList<String> args = new ArrayList(4);
+        parts.add(text);
+        args.add(subject);
+        advance();
+        if (token == Lexeme.Preposition) { parts.set(0, parts.get(0) + Score + text); advance(); }
+        while (true) {
+            if (!scanList(args)) return false;
+            if (token == Lexeme.Period) break;
+            if (token != Lexeme.Preposition) return false;
+            parts.add(text);
+            advance();
+        }
+
+        advance();
+        sink.accept(hasNo(alias) ? Statement.fact(line, parts, args) : Statement.namedFact(line, alias, parts, args));
+        return true;
+    }
+
+    private boolean scanList(List<String> args) {
+        String term = scanTerm();
+        if (hasNo(term)) return false;
+        args.add(term);
+        while (token == Lexeme.Enlist) {
+            advance();
+            term = scanTerm();
+            if (hasNo(term)) return false;
+            args.add(term);
+        }
+        return true;
+    }
+
+    private final StringBuilder phrase = new StringBuilder();
+    private String scanTerm() { // Proper+ Simple*, or Simple+
+        if (token != Lexeme.Proper && token != Lexeme.Simple) return null;
+        phrase.setLength(0);
+        while (token == Lexeme.Proper) appendName();
+        while (token == Lexeme.Simple) appendName();
+        return phrase.toString(); }
+
+    private void appendName() {
+        if (phrase.length() > 0) phrase.append(' ');
+        for (int next = tokenAt; next < nameEnd; next++) phrase.append((char) byteAt(next));
+        advance(); }
+
+    static final String HandoffReport = "handed statement at line %d of %s to the grammar";
+    private boolean handOff(int start, int startLine) { // parses one statement with the grammar
+        whisper(format(HandoffReport, startLine, sourceName));
+        Handoffs.incrementAndGet();
+        MappedCharStream input = MappedCharStream.from(bytes, start, sourceName);
+        SyntopicaLexer lexer = new SyntopicaLexer(input);
+        lexer.setTokenFactory(FactParser.CopyingTokens);
+        lexer.setLine(startLine);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(Bail);
+
+        SyntopicaParser parser = new SyntopicaParser(new UnbufferedTokenStream(new FactParser.ChannelFilter(lexer)));
+        parser.setBuildParseTree(false);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.removeErrorListeners();
+        parser.sendStatements(sink);
+        try {
+            ParserRuleContext statement = parser.statement();
+            input.seek(statement.getStop().getStopIndex() + 1);
+        }
+        catch (IllegalStateException ex) {
+            return false; // a syntax error (or malformed input), which the grammar reports during its own parse
+        }
+
+        this.at = start + input.byteOffset();
+        this.line = startLine;
+        for (int next = start; next < at; next++) if (byteAt(next) == NewLine) this.line++;
+        advance();
+        return true;
+    }
+
+    static final ANTLRErrorListener Bail = new BaseErrorListener() {
+        @Override public void syntaxError(Recognizer<?, ?> recognizer, Object symbol,
+            int line, int position, String message, RecognitionException ex) {
+            throw new ParseCancellationException(message); } };
+
+    //==============================================================================================
+    // tokens
+    //==============================================================================================
+
+    static enum Lexeme { End, Header, Named, Proper, Simple, Keyword, Preposition, Assign, Extends, Enlist, Period, Other }
+
+    static final Set<String> Prepositions = prepositions();
+    static Set<String> prepositions() { // from the grammar, without their colons
+        HashSet<String> results = new HashSet();
+        for (int type = SyntopicaLexer.About; type <= SyntopicaLexer.Without; type++) {
+            String literal = SyntopicaLexer.VOCABULARY.getLiteralName(type); // e.g., 'about:'
+            results.add(literal.substring(1, literal.length() - 2));
+        }
+        return results; }
+
+    static final String DomainHead = "Domain";
+    static final String NamedHead = "named";
+
+    static final int NewLine = '\n';
+    static final int Quote = '"';
+
+    private Lexeme token;
+    private int tokenAt;   // byte offset of the current token
+    private int tokenLine; // line of the current token
+    private int nameEnd;   // past the last letter or digit of a name
+    private String text;   // of a keyword, without its colon
+
+    private void advance() {
+        skipSpace();
+        tokenAt = at;
+        tokenLine = line;
+        token = nextToken(); }
+
+    private void skipSpace() { // and comments
+        while (at < limit) {
+            int c = byteAt(at);
+            if (c == NewLine) line++;
+            else if (c == Quote) { if (!skipComment()) return; continue; }
+            else if (c != ' ' && c != '\t' && c != '\r' && c != '\f') return;
+            at++;
+        }
+    }
+
+    private boolean skipComment() { // leaves any unclosed comment for the grammar to report
+        int lines = 0;
+        for (int next = at + 1; next < limit; next++) {
+            int c = byteAt(next);
+            if (c == NewLine) lines++;
+            else if (c == Quote) { at = next + 1; line += lines; return true; }
+        }
+        return false; }
+
+    private Lexeme nextToken() {
+        if (at >= limit) return Lexeme.End;
+        int c = byteAt(at);
+        if (isLetter(c)) return nextName(c);
+        switch (c) {
+            case ',': case ';': at++; return Lexeme.Enlist;
+            case '.': if (at + 2 < limit && byteAt(at + 1) == '.' && byteAt(at + 2) == '.') return Lexeme.Other;
+                at++; return Lexeme.Period;
+            case ':': if (at + 1 < limit && byteAt(at + 1) == '=') { at += 2; return Lexeme.Assign; }
+                return Lexeme.Other;
+            case '-': if (at + 1 < limit && byteAt(at + 1) == '>') { at += 2; return Lexeme.Extends; }
+                return Lexeme.Other;
+            default: return Lexeme.Other;
+        }
+    }
+
+    private Lexeme nextName(int c) {
+        int end = at + 1;
+        while (end < limit && (isLetter(byteAt(end)) || isDigit(byteAt(end)))) end++;
+        nameEnd = end;
+        if (end < limit && byteAt(end) == ':') { // a keyword
+            text = textOf(at, end);
+            at = end + 1;
+            if (Prepositions.contains(text)) return Lexeme.Preposition;
+            return NamedHead.equals(text) ? Lexeme.Named : Lexeme.Keyword;
+        }
+
+        boolean proper = c <= 'Z';
+        at = end;
+        if (proper && end - tokenAt == DomainHead.length() && DomainHead.equals(textOf(tokenAt, end))) return Lexeme.Header;
+        return proper ? Lexeme.Proper : Lexeme.Simple;
+    }
+
+    private String textOf(int start, int end) {
+        char[] chars = new char[end - start];
+        for (int next = start; next < end; next++) chars[next - start] = (char) byteAt(next);
+        return new String(chars); }
+
+    private int byteAt(int offset) { return bytes.get(offset) & 0xFF; }
+    private static boolean isLetter(int c) { return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'); }
+    private static boolean isDigit(int c) { return c >= '0' && c <= '9'; }
+    private boolean hasMark() {
+        return limit > 2 && byteAt(0) == 0xEF && byteAt(1) == 0xBB && byteAt(2) == 0xBF; }
+
+} // FactScanner
@@ -0,0 +1,100 @@
+package com.educery.facts;
+
+import java.io.*;
+import java.util.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import com.educery.utils.Logging;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Splits a fact file into chunks of whole statements, so that each chunk can be parsed separately.
+ * Scans the file once, and splits only at the start of a line that follows a statement ending Period.
+ * Ignores any Period inside a quoted string or comment, any decimal point, and any ellipsis.
+ *
+ * <h4>FactSplitter Responsibilities:</h4>
+ * <ul>
+ * <li>knows a fact file, and the size of its chunks</li>
+ * <li>finds the safe split points in a fact file</li>
+ * <li>knows the byte range and starting line number of each chunk</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply a fact file and a chunk size (in bytes) during construction</li>
+ * <li>parse the first chunk as a unit (with the domain header), and the rest as chunks</li>
+ * </ul>
+ */
+public class FactSplitter implements Logging {
+
+    private FactSplitter(File file, int chunkSize) { this.file = file; this.chunkSize = Math.max(1, chunkSize); }
+    public static List<Chunk> split(File file, int chunkSize) throws IOException {
+        return new FactSplitter(file, chunkSize).findChunks(); }
+
+    private final File file;
+    private final int chunkSize;
+
+    /**
+     * A byte range of a fact file, starting at the start of some line.
+     */
+    public static class Chunk {
+
+        final long start; final long end; final int line;
+        Chunk(long start, long end, int line) { this.start = start; this.end = end; this.line = line; }
+        public long start() { return this.start; }
+        public long end() { return this.end; }
+        public int line() { return this.line; }
+        public boolean hasHeader() { return this.start == 0; }
+
+    } // Chunk
+
+    static final char Period = '.';
+    static final char Quote = '\'';
+    static final char Comment = '"';
+    static final char NewLine = '\n';
+
+    private List<Chunk> findChunks() throws IOException {
+        List<Chunk> results = emptyList();
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            long size = channel.size();
+            long start = 0;
+            int line = 1;
+            int startLine = 1;
+            long offset = 0;
+            char quote = 0;       // the closing mark of any quote or comment
+            boolean ended = true; // after a statement ending Period
+            while (offset < size) {
+                long span = Math.min(Integer.MAX_VALUE, size - offset);
+                MappedByteBuffer bytes = channel.map(READ_ONLY, offset, span);
+                for (int at = 0; at < span; at++) {
+                    char c = (char) (bytes.get(at) & 0xFF);
+                    if (c == NewLine) {
+                        line++;
+                        long next = offset + at + 1;
+                        if (quote == 0 && ended && next - start >= chunkSize && next < size) {
+                            results.add(new Chunk(start, next, startLine));
+                            start = next; startLine = line;
+                        }
+                    }
+                    else if (quote != 0) { if (c == quote) quote = 0; }
+                    else if (c == Quote || c == Comment) { quote = c; if (c == Quote) ended = false; }
+                    else if (c == Period) ended = endsStatement(bytes, at, span);
+                    else if (!Character.isWhitespace(c)) ended = false;
+                }
+                offset += span;
+            }
+            results.add(new Chunk(start, size, startLine));
+        }
+        return results;
+    }
+
+    private static boolean endsStatement(MappedByteBuffer bytes, int at, long span) {
+        int prior = at > 0 ? bytes.get(at - 1) : ' ';
+        int next = at + 1 < span ? bytes.get(at + 1) : ' ';
+        if (prior == Period || next == Period) return false; // ellipsis
+        return !(Character.isDigit(prior) && Character.isDigit(next)); } // decimal point
+
+} // FactSplitter
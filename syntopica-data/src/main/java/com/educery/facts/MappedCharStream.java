@@ -0,0 +1,145 @@
+package com.educery.facts;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import com.educery.utils.Logging;
+
+/**
+ * Streams the characters of a UTF-8 file to a lexer, without reading the file onto the heap.
+ * Maps the file into memory, and decodes each code point only when the lexer asks for it.
+ *
+ * <h4>MappedCharStream Responsibilities:</h4>
+ * <ul>
+ * <li>knows the bytes of a mapped file, and the current code point index and byte offset</li>
+ * <li>skips a leading byte order mark</li>
+ * <li>steps forward or backward through the code points of the file</li>
+ * <li>reports malformed UTF-8 with its byte offset</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply a file (or a slice of one, under 2 GB) during construction</li>
+ * <li>prefer to get text near the current position, as that costs only the distance walked</li>
+ * </ul>
+ */
+public class MappedCharStream implements CharStream, Logging {
+
+    static final String SizeReport = "can't map %s, its size exceeds 2 GB";
+    public static MappedCharStream from(File file) throws IOException { return from(file, 0, -1); }
+    public static MappedCharStream from(File file, long start, long end) throws IOException { // a slice, to end (or -1)
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            long limit = end < 0 ? channel.size() : end;
+            if (limit - start > Integer.MAX_VALUE) throw new IOException(String.format(SizeReport, file.getPath()));
+            return new MappedCharStream(channel.map(READ_ONLY, start, limit - start), file.getPath(), start == 0);
+        }
+    }
+
+    static MappedCharStream from(ByteBuffer bytes, int start, String sourceName) { // a slice of mapped bytes
+        ByteBuffer slice = bytes.duplicate();
+        slice.position(start);
+        return new MappedCharStream(slice.slice(), sourceName, false); }
+
+    private MappedCharStream(ByteBuffer bytes, String sourceName, boolean fileStart) {
+        this.bytes = bytes;
+        this.limit = bytes.limit();
+        this.sourceName = sourceName;
+        this.base = fileStart && hasMark() ? 3 : 0;
+        this.offset = base;
+    }
+
+    private final ByteBuffer bytes;
+    private final int limit;
+    private final int base; // past any byte order mark
+    private final String sourceName;
+    @Override public String getSourceName() { return this.sourceName; }
+
+    private int index = 0; // current code point
+    private int offset;    // byte offset of the current code point
+    @Override public int index() { return this.index; }
+    int byteOffset() { return this.offset; }
+
+    private int size = -1; // counted when first needed
+    @Override public int size() {
+        if (size < 0) {
+            int count = 0;
+            for (int at = base; at < limit; at++) if (!continues(at)) count++;
+            size = count;
+        }
+        return size; }
+
+    @Override public int mark() { return -1; } // every position stays mapped
+    @Override public void release(int marker) { }
+
+    @Override public void consume() {
+        if (offset >= limit) throw new IllegalStateException("cannot consume EOF");
+        offset += widthAt(offset);
+        index++; }
+
+    @Override public int LA(int i) {
+        if (i == 0) return 0; // undefined
+        if (index + i < 0) return EOF;
+        int at = offset;
+        if (i > 0) for (int count = 1; count < i && at < limit; count++) at += widthAt(at);
+        else for (int count = 0; count > i; count--) at = priorOffset(at);
+        return at < limit ? codePointAt(at) : EOF; }
+
+    @Override public void seek(int target) {
+        while (index < target && offset < limit) consume();
+        while (index > target && offset > base) { offset = priorOffset(offset); index--; } }
+
+    @Override public String getText(Interval interval) {
+        int start = Math.max(interval.a, 0);
+        int at = offsetOf(start);
+        StringBuilder b = new StringBuilder(Math.max(interval.length(), 0));
+        for (int count = start; count <= interval.b && at < limit; count++) {
+            b.appendCodePoint(codePointAt(at));
+            at += widthAt(at);
+        }
+        return b.toString(); }
+
+    private int offsetOf(int target) { // walks from the current position
+        int at = offset;
+        for (int count = index; count < target && at < limit; count++) at += widthAt(at);
+        for (int count = index; count > target && at > base; count--) at = priorOffset(at);
+        return at; }
+
+    private boolean hasMark() {
+        return limit > 2 && byteAt(0) == 0xEF && byteAt(1) == 0xBB && byteAt(2) == 0xBF; }
+
+    private int byteAt(int at) { return bytes.get(at) & 0xFF; }
+    private boolean continues(int at) { return (byteAt(at) & 0xC0) == 0x80; }
+    private int priorOffset(int at) { do at--; while (at > base && continues(at)); return at; }
+
+    private int widthAt(int at) {
+        int lead = byteAt(at);
+        if (lead < 0x80) return 1;
+        if (lead >= 0xC2 && lead <= 0xDF) return 2;
+        if (lead >= 0xE0 && lead <= 0xEF) return 3;
+        if (lead >= 0xF0 && lead <= 0xF4) return 4;
+        throw malformed(at); }
+
+    private int codePointAt(int at) {
+        int lead = byteAt(at);
+        if (lead < 0x80) return lead;
+        int width = widthAt(at);
+        if (at + width > limit) throw malformed(at);
+        int result = lead & (0xFF >> (width + 1));
+        for (int next = at + 1; next < at + width; next++) {
+            if (!continues(next)) throw malformed(at);
+            result = (result << 6) | (byteAt(next) & 0x3F);
+        }
+        return result; }
+
+    static final String MalformedReport = "malformed UTF-8 at byte %d of %s";
+    private IllegalStateException malformed(int at) {
+        return new IllegalStateException(format(MalformedReport, at, getSourceName())); }
+
+    @Override public String toString() { return getText(Interval.of(0, size() - 1)); }
+
+} // MappedCharStream
@@ -1,11 +1,13 @@
 package com.educery.facts;
 
 import java.util.*;
+import java.util.function.Consumer;
 import org.antlr.v4.runtime.*;
 
 import com.educery.cogs.*;
 import com.educery.concepts.*;
 import com.educery.utils.Logging;
+import com.educery.facts.Statement.Kind;
 import static com.educery.utils.Utils.*;
 import static com.educery.facts.SyntopicaParser.*;
 import static org.apache.commons.lang3.StringUtils.*;
@@ -18,17 +20,48 @@ import static org.apache.commons.lang3.StringUtils.*;
  */
 public abstract class ParserGlue extends Parser implements Logging {
     
+    // note: the actions read only tokens, because lean parsing builds no parse tree (no rule context text)
     public ParserGlue(TokenStream s) { super(s); }
-    void buildDomain(DomainContext ctx) { Domain.named(ctx.term.names); }
+    void buildDomain(DomainContext ctx) { Domain.begin(ctx.term.names); }
+
+    Consumer<Statement> sink = Statement::build; // builds the model by default
+    public void sendStatements(Consumer<Statement> sink) { this.sink = sink; }
+    void takeStatement(StatementContext ctx) { sink.accept(statementFrom(ctx)); }
+    static Statement statementFrom(StatementContext ctx) {
+        int line = ctx.getStart().getLine();
+        if (hasSome(ctx.b)) return breedFrom(ctx.b, line);
+        if (hasSome(ctx.f)) return factFrom(ctx.f, line);
+        return aliasFrom(ctx.a, line);
+    }
+
+    static Statement factFrom(FactContext ctx, int line) { return Statement.fact(line, predicateFrom(ctx), argsFrom(ctx)); }
+    static Statement breedFrom(BreedContext ctx, int line) {
+        return Statement.breed(line, phraseFrom(ctx.n.names), phraseFrom(ctx.b.names)); }
+
+    static Statement aliasFrom(AliasContext ctx, int line) {
+        String name = aliasName(ctx);
+        if (hasSome(ctx.b)) {
+            BlockClosure closure = closureFrom(ctx.b);
+            return aliasFrom(name, line, NoParts, NoParts, () -> Block.named(name, closure));
+        }
+
+        if (hasSome(ctx.v)) {
+            List<String> values = ctx.v.list;
+            return aliasFrom(name, line, NoParts, values, () -> ValueList.named(name, values).makeTopic());
+        }
+
+        if (hasSome(ctx.r)) {
+            List<String> parts = termsFrom(ctx.r.s);
+            return aliasFrom(name, line, NoParts, parts, () -> Record.named(name).withParts(parts).makeTopic());
+        }
+
+        if (hasSome(ctx.f)) return Statement.namedFact(line, name, predicateFrom(ctx.f), argsFrom(ctx.f));
+        return Statement.twin(line, name, phraseFrom(ctx.n.names));
+    }
 
-    void takeFact(FactContext ctx)    { Selector.withParts(predicateFrom(ctx)).buildFact(argsFrom(ctx)); }
-    void takeBreed(BreedContext ctx)  { Breed.named(phraseFrom(ctx.n.names), phraseFrom(ctx.b.names)).makeTopic(); }
-    void takeAlike(AliasContext ctx)  { Alike.named(aliasName(ctx), phraseFrom(ctx.n.names)).makeTopic(); }
-    void takeRecord(AliasContext ctx) { Record.named(aliasName(ctx)).withParts(termsFrom(ctx.r.s)).makeTopic(); }
-    void takeValues(AliasContext ctx) { ValueList.named(aliasName(ctx), ctx.v.list).makeTopic(); }
-    void takeBlock(AliasContext ctx)  { Block.named(aliasName(ctx), closureFrom(ctx.b)); }
-    void takeFact(AliasContext ctx)   { 
-        Alike.nameFact(aliasName(ctx), Selector.withParts(predicateFrom(ctx.f)).buildFact(argsFrom(ctx.f))); }
+    static final List<String> NoParts = Statement.NoParts;
+    static Statement aliasFrom(String name, int line, List<String> parts, List<String> terms, Runnable builder) {
+        return Statement.with(Kind.Alias, line, name, parts, terms, builder); }
 
     static String aliasName(AliasContext ctx) { return phraseFrom(ctx.a.names); }
     static List<TermList> listsFrom(List<TermListContext> cts) { return map(cts, (ctx) -> listFrom(ctx)); }
@@ -64,7 +97,7 @@ public abstract class ParserGlue extends Parser implements Logging {
 
     void takeSend(SendContext ctx) { ctx.term = KeywordTerm.with(ctx.f.term, nullOr(c -> keywordFrom(c), ctx.m)); }
     static KeywordMessage keywordFrom(MessageContext ctx) { return KeywordMessage.with(selectorFrom(ctx), ctx.f.term); }
-    static String selectorFrom(MessageContext ctx) { return hasSome(ctx.verb) ? ctx.verb.getText() : ctx.prep.getText(); }
+    static String selectorFrom(MessageContext ctx) { return hasSome(ctx.verb) ? ctx.verb.getText() : ctx.prep.p.getText(); }
 
     void takeBinary(FormulaContext ctx) { ctx.term = Formula.with(ctx.p.term, nullOr(c -> binaryFrom(c), ctx.b)); }
     static BinaryMessage binaryFrom(BinaryContext ctx) { return BinaryMessage.with(ctx.op.getText(), ctx.b.term); };
@@ -75,7 +108,7 @@ public abstract class ParserGlue extends Parser implements Logging {
 
     void takeNest(PrimaryContext ctx) { ctx.term = ctx.n.s.term; }
     void takeClosure(PrimaryContext ctx) { ctx.term = closureFrom(ctx.c); }
-    void takeValue(PrimaryContext ctx) { ctx.term = BasicTerm.with(ctx.v.getText()); }
+    void takeValue(PrimaryContext ctx) { ctx.term = BasicTerm.with(ctx.v.n.getText()); }
 
     void takeTerms(ValuesContext ctx)  { ctx.list.addAll(termsFrom(ctx.s)); }
     void takeValues(ValuesContext ctx) { ctx.list.addAll(valuesFrom(ctx.v)); }
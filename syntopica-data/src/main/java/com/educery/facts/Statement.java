@@ -0,0 +1,71 @@
+package com.educery.facts;
+
+import java.util.*;
+import com.educery.utils.Logging;
+import com.educery.concepts.Selector;
+import static com.educery.utils.Utils.*;
+
+/**
+ * A complete statement (a fact, breed, or alias), as parsed from a fact file.
+ * A parser hands each statement to its sink once the statement ends (with its Period).
+ * The default sink builds the statement into the current domain.
+ *
+ * <h4>Statement Responsibilities:</h4>
+ * <ul>
+ * <li>knows its kind, subject, predicate parts, terms, and source line</li>
+ * <li>builds itself into the current domain, when asked</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>build a statement at most once</li>
+ * </ul>
+ */
+public class Statement implements Logging {
+
+    public static enum Kind { Fact, Breed, Alias }
+
+    private Statement(Kind kind, int line, String subject) { this.kind = kind; this.line = line; this.subject = subject; }
+    static Statement with(Kind kind, int line, String subject, List<String> parts, List<String> terms, Runnable builder) {
+        Statement result = new Statement(kind, line, subject);
+        result.parts.addAll(parts);
+        result.terms.addAll(terms);
+        result.builder = builder;
+        return result; }
+
+    static final List<String> NoParts = Collections.emptyList();
+    static Statement fact(int line, List<String> parts, List<String> args) {
+        return with(Kind.Fact, line, args.get(0), parts, args, () -> Selector.withParts(parts).buildFact(args)); }
+
+    static Statement breed(int line, String name, String base) {
+        return with(Kind.Breed, line, name, NoParts, Arrays.asList(name, base), () -> Breed.named(name, base).makeTopic()); }
+
+    static Statement twin(int line, String name, String twin) {
+        return with(Kind.Alias, line, name, NoParts, Arrays.asList(twin), () -> Alike.named(name, twin).makeTopic()); }
+
+    static Statement namedFact(int line, String name, List<String> parts, List<String> args) {
+        return with(Kind.Alias, line, name, parts, args,
+            () -> Alike.nameFact(name, Selector.withParts(parts).buildFact(args))); }
+
+    private final Kind kind;
+    public Kind kind() { return this.kind; }
+
+    private final int line;
+    public int line() { return this.line; }
+
+    private final String subject;
+    public String subject() { return this.subject; }
+
+    private final ArrayList<String> parts = emptyList(); // predicate parts, if any
+    public List<String> parts() { return this.parts; }
+
+    private final ArrayList<String> terms = emptyList(); // the subject and arguments, or the alias definition
+    public List<String> terms() { return this.terms; }
+
+    private Runnable builder;
+    public void build() { builder.run(); }
+
+    @Override public String toString() {
+        return kind() + Colon + line() + Blank + subject() + Blank + parts() + Blank + terms(); }
+
+} // Statement
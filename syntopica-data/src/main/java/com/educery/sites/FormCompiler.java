@@ -0,0 +1,331 @@
+package com.educery.sites;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+import java.nio.file.Files;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.educery.utils.*;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Compiles a (simple) page form into a renderer, so that rendering a page appends strings directly
+ * rather than interpreting a FreeMarker template against a root map of wrapped objects.
+ * Supports the subset of FreeMarker the standard forms use: text, interpolations of variables and their members
+ * (e.g., ${topic.formatFact(fact, "topics/")}), and the list, if, and assign (with a body) directives,
+ * stripping the lines that hold only directives, as FreeMarker does.
+ * Resolves each variable to a slot during compilation, and each member with the tables of ModelWrapper.
+ * Reports any other feature as unsupported, so that its client renders that form with FreeMarker instead.
+ *
+ * <h4>FormCompiler Responsibilities:</h4>
+ * <ul>
+ * <li>splits a form into its text, interpolations, and directives</li>
+ * <li>compiles them into a tree of renderers, or reports why it could not</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>name the root variables of a form during compilation, and supply their values (in order) during rendering</li>
+ * <li>render a page with FreeMarker whenever its compiled form reports an unsupported value</li>
+ * </ul>
+ */
+public class FormCompiler implements Logging {
+
+    private final int rootCount;
+    private FormCompiler(List<String> rootNames) { rootNames.forEach(name -> slots.put(name, slotCount++)); rootCount = slotCount; }
+
+    /**
+     * Indicates a form feature (or a value) that a compiled form does not support.
+     */
+    public static class Unsupported extends RuntimeException {
+
+        Unsupported(String message) { super(message); }
+
+    } // Unsupported
+
+    static final String CompileReport = "rendering %s with FreeMarker: %s";
+
+    /**
+     * Compiles a form file.
+     * @param formFile a form file
+     * @param rootNames the names of the root variables of the form
+     * @return a compiled form, or null if the form uses any unsupported features
+     */
+    public static Form compile(File formFile, String... rootNames) {
+        String text = Exceptional.nullOrTryLoudly(() -> new String(Files.readAllBytes(formFile.toPath()), UTF_8));
+        if (hasNo(text)) return null;
+        FormCompiler compiler = new FormCompiler(Arrays.asList(rootNames));
+        try { return compiler.compile(text); }
+        catch (Unsupported e) { compiler.report(compiler.format(CompileReport, formFile.getName(), e.getMessage())); return null; } }
+
+    public static Form compile(String text, String... rootNames) { return new FormCompiler(Arrays.asList(rootNames)).compile(text); }
+
+    static final String SquareSyntax = "[#ftl";
+    private Form compile(String text) {
+        if (text.trim().startsWith(SquareSyntax)) throw new Unsupported("square bracket syntax");
+        return new Form(parse(tokenize(text)), rootCount, slotCount); }
+
+    /**
+     * A compiled form.
+     */
+    public static class Form {
+
+        private final Node body; private final int rootCount; private final int slotCount;
+        Form(Node body, int rootCount, int slotCount) { this.body = body; this.rootCount = rootCount; this.slotCount = slotCount; }
+
+        /**
+         * Renders a page.
+         * @param out receives the page
+         * @param roots the values of the root variables
+         * @throws Unsupported if some value cannot be rendered as FreeMarker would
+         */
+        public void render(StringBuilder out, Object... roots) {
+            if (roots.length != rootCount) throw new Unsupported("expected " + rootCount + " root values");
+            Object[] slots = Arrays.copyOf(roots, slotCount);
+            body.render(out, slots); }
+
+    } // Form
+
+    /**
+     * Renders a part of a form, given the values of its variables.
+     */
+    static interface Node {
+
+        void render(StringBuilder out, Object[] slots);
+
+    } // Node
+
+    /**
+     * Evaluates an expression, given the values of its variables.
+     */
+    static interface Expression {
+
+        Object evaluate(Object[] slots);
+
+    } // Expression
+
+    private int slotCount = 0;
+    private final HashMap<String, Integer> slots = emptyMap();
+
+    static final Pattern Tokens = Pattern.compile("<#--.*?-->|<#(\\w+)(?:\\s+([^>]*?))?\\s*>|</#(\\w+)\\s*>|\\$\\{([^}]*)\\}");
+    static final String[] Unknowns = { "<#", "</#", "<@", "</@", "${", "#{" };
+    static final int Text = 0, Value = 1, Open = 2, Close = 3;
+
+    /**
+     * A part of a form: some text, an interpolation, or a directive (opened or closed).
+     */
+    static class Token {
+
+        final int kind; final String name; final String body;
+        Token(int kind, String name, String body) { this.kind = kind; this.name = name; this.body = body; }
+
+    } // Token
+
+    private List<Token> tokenize(String text) {
+        List<Token> results = emptyList();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            tokenizeLine(text.substring(start, end), results);
+            start = end;
+        }
+        return results; }
+
+    private void tokenizeLine(String line, List<Token> results) {
+        List<Token> tokens = emptyList();
+        boolean directivesOnly = true; boolean anyDirective = false;
+        Matcher m = Tokens.matcher(line);
+        int position = 0;
+        while (m.find()) {
+            directivesOnly &= addText(line.substring(position, m.start()), tokens);
+            if (hasSome(m.group(1))) tokens.add(new Token(Open, m.group(1), m.group(2)));
+            else if (hasSome(m.group(3))) tokens.add(new Token(Close, m.group(3), null));
+            else if (hasSome(m.group(4))) { tokens.add(new Token(Value, null, m.group(4))); directivesOnly = false; }
+            anyDirective |= hasNo(m.group(4));
+            position = m.end();
+        }
+        directivesOnly &= addText(line.substring(position), tokens);
+
+        if (!anyDirective || !directivesOnly) { results.addAll(tokens); return; }
+        tokens.forEach(t -> { if (t.kind != Text) results.add(t); }); // as FreeMarker strips such lines
+    }
+
+    private boolean addText(String text, List<Token> tokens) { // returns whether the text is blank
+        for (String unknown : Unknowns) if (text.contains(unknown)) throw new Unsupported("unknown markup near: " + text.trim());
+        if (!text.isEmpty()) tokens.add(new Token(Text, null, text));
+        return text.trim().isEmpty(); }
+
+    private Node parse(List<Token> tokens) {
+        int[] position = { 0 };
+        Node result = parseBody(tokens, position, null);
+        if (position[0] < tokens.size()) throw new Unsupported("unexpected: </#" + tokens.get(position[0]).name + ">");
+        return result; }
+
+    private Node parseBody(List<Token> tokens, int[] position, String closing) {
+        List<Node> nodes = emptyList();
+        while (position[0] < tokens.size()) {
+            Token token = tokens.get(position[0]++);
+            if (token.kind == Text) { String text = token.body; nodes.add((out, slots) -> out.append(text)); }
+            else if (token.kind == Value) nodes.add(interpolation(parseExpression(token.body)));
+            else if (token.kind == Close) {
+                if (!token.name.equals(closing)) throw new Unsupported("unexpected: </#" + token.name + ">");
+                return sequence(nodes);
+            }
+            else nodes.add(directive(token, tokens, position));
+        }
+        if (hasSome(closing)) throw new Unsupported("missing: </#" + closing + ">");
+        return sequence(nodes); }
+
+    private static Node sequence(List<Node> nodes) {
+        Node[] parts = nodes.toArray(new Node[nodes.size()]);
+        return (out, slots) -> { for (Node part : parts) part.render(out, slots); }; }
+
+    static final String ListDirective = "list";
+    static final String IfDirective = "if";
+    static final String AssignDirective = "assign";
+    static final Pattern ListParts = Pattern.compile("(.+?)\\s+as\\s+(\\w+)");
+    private Node directive(Token token, List<Token> tokens, int[] position) {
+        String name = token.name;
+        String params = hasSome(token.body) ? token.body.trim() : Empty;
+        if (ListDirective.equals(name)) {
+            Matcher m = ListParts.matcher(params);
+            if (!m.matches()) throw new Unsupported("<#list " + params + ">");
+            Expression items = parseExpression(m.group(1));
+            Integer prior = slots.get(m.group(2));
+            int slot = slotCount++;
+            slots.put(m.group(2), slot);
+            Node body = parseBody(tokens, position, name);
+            if (hasSome(prior)) slots.put(m.group(2), prior); else slots.remove(m.group(2));
+            return (out, values) -> {
+                for (Object item : itemsOf(items.evaluate(values))) { values[slot] = item; body.render(out, values); } };
+        }
+
+        if (IfDirective.equals(name)) {
+            Expression condition = parseExpression(params);
+            Node body = parseBody(tokens, position, name);
+            return (out, values) -> { if (isTrue(condition.evaluate(values))) body.render(out, values); };
+        }
+
+        if (AssignDirective.equals(name) && params.matches("\\w+")) {
+            int slot = slots.computeIfAbsent(params, p -> slotCount++);
+            Node body = parseBody(tokens, position, name);
+            return (out, values) -> { StringBuilder b = new StringBuilder(); body.render(b, values); values[slot] = b.toString(); };
+        }
+
+        throw new Unsupported("<#" + name + (params.isEmpty() ? Empty : Blank + params) + ">");
+    }
+
+    private static Node interpolation(Expression e) {
+        return (out, slots) -> {
+            Object value = e.evaluate(slots);
+            if (!(value instanceof CharSequence)) throw new Unsupported("interpolated value: " + value);
+            out.append((CharSequence) value); }; }
+
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean) return (Boolean) value;
+        throw new Unsupported("condition value: " + value); }
+
+    private static Iterable<?> itemsOf(Object value) {
+        if (value instanceof Object[]) return Arrays.asList((Object[]) value);
+        if (value instanceof Collection) return (Collection) value;
+        throw new Unsupported("listed value: " + value); }
+
+    /**
+     * Parses a variable, and its members (if any): name ( . member ( (args) )? )*
+     */
+    private Expression parseExpression(String text) {
+        int[] position = { 0 };
+        Expression result = parseExpression(text.trim(), position);
+        if (position[0] < text.trim().length()) throw new Unsupported("expression: " + text.trim());
+        return result; }
+
+    static final Pattern Name = Pattern.compile("[A-Za-z_]\\w*");
+    static final Pattern Literal = Pattern.compile("\"([^\"\\\\]*)\"|'([^'\\\\]*)'");
+    private Expression parseExpression(String text, int[] position) {
+        Matcher literal = Literal.matcher(text).region(position[0], text.length());
+        if (literal.lookingAt()) {
+            position[0] = literal.end();
+            String value = hasSome(literal.group(1)) ? literal.group(1) : literal.group(2);
+            return slots -> value;
+        }
+
+        String name = parseName(text, position);
+        Integer slot = slots.get(name);
+        if (hasNo(slot)) throw new Unsupported("variable: " + name);
+        int index = slot;
+        Expression result = values -> values[index];
+        while (position[0] < text.length() && text.charAt(position[0]) == '.') {
+            position[0]++;
+            String member = parseName(text, position);
+            if (!ModelWrapper.hasMember(member)) throw new Unsupported("member: " + member);
+            if (position[0] < text.length() && text.charAt(position[0]) == '(') {
+                position[0]++;
+                List<Expression> args = emptyList();
+                skipBlanks(text, position);
+                while (position[0] < text.length() && text.charAt(position[0]) != ')') {
+                    args.add(parseExpression(text, position));
+                    skipBlanks(text, position);
+                    if (position[0] < text.length() && text.charAt(position[0]) == ',') { position[0]++; skipBlanks(text, position); }
+                }
+                if (position[0] >= text.length()) throw new Unsupported("expression: " + text);
+                position[0]++;
+                result = new MemberCall(result, member, true, args.toArray(new Expression[args.size()]));
+            }
+            else result = new MemberCall(result, member, false, NoArgs);
+        }
+        return result; }
+
+    private static String parseName(String text, int[] position) {
+        Matcher m = Name.matcher(text).region(position[0], text.length());
+        if (!m.lookingAt()) throw new Unsupported("expression: " + text);
+        position[0] = m.end();
+        return m.group(); }
+
+    private static void skipBlanks(String text, int[] position) {
+        while (position[0] < text.length() && Character.isWhitespace(text.charAt(position[0]))) position[0]++; }
+
+    static final Expression[] NoArgs = { };
+
+    /**
+     * Evaluates a member of some model object (see ModelWrapper), binding the member once per type.
+     */
+    static class MemberCall implements Expression {
+
+        private final Expression target; private final String name; private final boolean called; private final Expression[] args;
+        MemberCall(Expression target, String name, boolean called, Expression[] args) {
+            this.target = target; this.name = name; this.called = called; this.args = args; }
+
+        /**
+         * A member bound to a type.
+         */
+        static class Binding {
+
+            final Class<?> type; final ModelWrapper.Member member;
+            Binding(Class<?> type, ModelWrapper.Member member) { this.type = type; this.member = member; }
+
+        } // Binding
+
+        private volatile Binding binding;
+        private ModelWrapper.Member bind(Object item) {
+            Binding b = this.binding;
+            if (hasSome(b) && b.type == item.getClass()) return b.member;
+            ModelWrapper.Members members = ModelWrapper.membersOf(item);
+            Object member = hasNo(members) ? null : (called ? members.methods : members.properties).get(name);
+            if (hasNo(member)) throw new Unsupported("member: " + name + " of: " + item.getClass().getSimpleName());
+            this.binding = new Binding(item.getClass(), (ModelWrapper.Member) member);
+            return (ModelWrapper.Member) member; }
+
+        @Override public Object evaluate(Object[] slots) {
+            Object item = target.evaluate(slots);
+            if (hasNo(item)) throw new Unsupported("null value before: " + name);
+            ModelWrapper.Member member = bind(item);
+            Object[] values = new Object[args.length];
+            for (int index = 0; index < values.length; index++) values[index] = args[index].evaluate(slots);
+            ModelWrapper.Arguments arguments = values.length == 0 ? ModelWrapper.Arguments.None : new ModelWrapper.Arguments(Arrays.asList(values));
+            return Exceptional.defaultOrTryLoudly(() -> member.apply(item, arguments), null); }
+
+    } // MemberCall
+
+} // FormCompiler
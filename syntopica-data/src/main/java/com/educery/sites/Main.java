@@ -2,6 +2,7 @@ package com.educery.sites;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
 import static org.apache.commons.io.FileUtils.*;
 
 import static com.educery.sites.ModelSite.*;
@@ -10,6 +11,7 @@ import static com.educery.utils.Site.MarkDown;
 import static com.educery.utils.Exceptional.*;
 import static com.educery.utils.Utils.*;
 import com.educery.utils.Logging;
+import static com.educery.utils.LineBuilder.Equal;
 
 /**
  * A command line interface for Syntopica tool.
@@ -18,13 +20,16 @@ import com.educery.utils.Logging;
 public class Main implements Logging {
 
     public static void main(String... args) { new Main().launchTool(args); }
-    void launchTool(String... args) {
+    void launchTool(String... commandArgs) {
+        List<String> options = select(wrap(commandArgs), arg -> arg.startsWith(Option));
+        String[] args = unwrap(select(wrap(commandArgs), arg -> !arg.startsWith(Option)), NoArgs);
         File baseFolder = locateBase(args);
         if (hasNo(baseFolder)) { reportUsage(); return; }
 
         File briefsFolder = new File(baseFolder, Briefs);
-        File domainFacts = locateFacts(briefsFolder, args);
-        if (hasNo(domainFacts)) { reportUsage(); return; }
+        boolean piped = args.length > 1 && args[1].equals(Piped);
+        List<File> domainFacts = piped ? emptyList() : locateFacts(briefsFolder, args);
+        if (!piped && hasNo(domainFacts)) { reportUsage(); return; }
 
         File formsFolder = locateForms(baseFolder);
         File topicsFolder = new File(baseFolder, Topics);
@@ -37,13 +42,61 @@ public class Main implements Logging {
             format(ImageReport, imagesFolder.getCanonicalPath())
             ));
 
-        ModelSite.withForms(formsFolder)
+        ModelSite site = ModelSite.withForms(formsFolder)
             .withBases(baseFolder, briefsFolder, topicsFolder, imagesFolder)
-            .withFacts(domainFacts)
+            .withThreads(threadCount(options))
+            .withChunks(chunkSize(options))
+            .withSnapshots(hasSome(optionValue(options, Snapshot)))
+            .withCompiledForms(hasSome(optionValue(options, Compiled)))
+            .withUnchangedKept(hasSome(optionValue(options, Unchanged)))
+            .withArchive(archiveFile(baseFolder, options))
+            .withIncrements(hasSome(optionValue(options, Incremental))); // before reading the facts, see readDomainFacts
+
+        (piped ? site.withFacts(System.in, StandardInput) : site.withFacts(domainFacts))
             .withMarkdown()
             .generatePages();
     }
 
+    static final String Option = "--";
+    static final String[] NoArgs = { };
+    static String optionValue(List<String> options, String optionName) {
+        String option = findFirst(options, o -> o.equals(Option + optionName) || o.startsWith(Option + optionName + Equal));
+        return hasNo(option) ? null : option.contains(Equal) ? option.substring(option.indexOf(Equal) + 1) : Empty; }
+
+    static final String Incremental = "incremental";
+    static final String Snapshot = "snapshot";
+    static final String Compiled = "compiled";
+    static final String Unchanged = "keep-unchanged";
+    static final String Archive = "archive";
+    static final String SiteArchive = "site.zip";
+    File archiveFile(File baseFolder, List<String> options) { // relative to the base folder
+        String name = optionValue(options, Archive);
+        if (hasNo(name)) return null; // folders by default
+        File file = new File(name.isEmpty() ? SiteArchive : name);
+        return file.isAbsolute() ? file : new File(baseFolder, file.getPath()); }
+    static final String Chunked = "chunked";
+    static final int ChunkSize = 4096; // kilobytes
+    static final int MaxChunkSize = Integer.MAX_VALUE / 1024; // kilobytes, so that its bytes fit an int
+    static final String ChunkReport = "chunk size %s KB is out of range, using %d KB";
+    int chunkSize(List<String> options) { // in bytes
+        String size = optionValue(options, Chunked);
+        if (hasNo(size)) return 0; // whole files by default
+        return chunkBytes(size.isEmpty() ? String.valueOf(ChunkSize) : size); }
+
+    public static int chunkBytes(String kilobytes) { // clamped between 1 KB and MaxChunkSize
+        long size = defaultOrTryLoudly(() -> Long.parseLong(kilobytes.trim()), (long) ChunkSize);
+        int result = (int) Math.max(1, Math.min(MaxChunkSize, size));
+        if (result != size) Logging.logger(Main.class).warn(String.format(ChunkReport, kilobytes, result));
+        return Math.multiplyExact(result, 1024); }
+
+    static final String Threads = "threads";
+    static final int ProcessorCount = Runtime.getRuntime().availableProcessors();
+    int threadCount(List<String> options) {
+        String count = optionValue(options, Threads);
+        if (hasNo(count)) return 1; // serial by default
+        if (count.isEmpty()) return ProcessorCount;
+        return defaultOrTryLoudly(() -> Integer.parseInt(count), 1); }
+
     static final String FormsReport  = "  using forms from: %s";
     static final String BriefsReport = "   and briefs from: %s";
     static final String BuildReport  = "building topics in: %s";
@@ -58,11 +111,24 @@ public class Main implements Logging {
         return nullOrTryQuietly((b) -> b.getCanonicalFile(), baseFolder);
     }
 
+    static final String Piped = "-";
+    static final String StandardInput = "stdin";
     static final String Briefs = "briefs";
     static final String Facts = "domain-facts";
-    File locateFacts(File briefsFolder, String... args) {
-        String factsFile = Facts;
-        if (args.length > 1) factsFile = args[1];
+    static final String[] DefaultFacts = { Facts };
+    List<File> locateFacts(File briefsFolder, String... args) {
+        String[] factsNames = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : DefaultFacts;
+        List<File> results = emptyList();
+        for (String factsName : factsNames) {
+            File domainFacts = locateFacts(briefsFolder, factsName);
+            if (hasNo(domainFacts)) return null;
+            results.add(domainFacts);
+        }
+        return results;
+    }
+
+    File locateFacts(File briefsFolder, String factsName) {
+        String factsFile = factsName;
         if (!factsFile.endsWith(Text)) factsFile += Text;
 
         File domainFacts = new File(briefsFolder, factsFile);
@@ -96,9 +162,19 @@ public class Main implements Logging {
             "    java -jar syntopica.jar [baseFolder] {domainFacts} ...", "",
             "where [baseFolder] locates the facts and resulting site,",
             "use '.' without quotes for the current folder", "",
-            "{domainFacts} ... are name(s) some .txt file(s) that contain domain facts",
+            "{domainFacts} ... are name(s) some .txt file(s) that contain domain facts, merged in the order given",
             "all such fact files are found in a folder named 'briefs' under the [baseFolder]",
-            "if none is provided, 'domain-facts.txt' will be assumed");
+            "if none is provided, 'domain-facts.txt' will be assumed",
+            "use '-' without quotes to read the domain facts from stdin", "",
+            "options:",
+            "    --threads[=count]   parses fact files and generates pages with several threads (default: all processors)",
+            "    --incremental       generates only those pages whose facts, briefs, or forms changed",
+            "    --chunked[=size]    splits fact files into chunks of some size (in KB, default: 4096) parsed in parallel",
+            "    --snapshot          saves the parsed facts, and loads them instead of parsing until the facts change",
+            "    --compiled          renders pages with forms compiled at first use (else with FreeMarker, if unsupported)",
+            "    --keep-unchanged    leaves alone those page files whose bytes would not change",
+            "    --archive[=file]    writes the pages and diagrams into a zip archive (default: site.zip) instead of folders",
+            "                        (streams the pages into the archive in topic order, as they get rendered)");
 
         reportEach("",
             "note, if you've only just built the tool, use its location in the command above: ",
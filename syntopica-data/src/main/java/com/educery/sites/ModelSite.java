@@ -2,13 +2,17 @@ package com.educery.sites;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.security.*;
 import freemarker.template.*;
+import org.apache.commons.io.output.StringBuilderWriter;
 import static freemarker.template.TemplateExceptionHandler.*;
 
 import com.educery.utils.*;
 import com.educery.concepts.*;
 import com.educery.concepts.Number;
-import com.educery.facts.FactParser;
+import com.educery.facts.*;
 import static com.educery.utils.Utils.*;
 import static com.educery.utils.Exceptional.*;
 
@@ -17,7 +21,7 @@ import static com.educery.utils.Exceptional.*;
  *
  * <h4>ModelSite Responsibilities:</h4>
  * <ul>
- * <li>reads domain model facts from a model file</li>
+ * <li>reads domain model facts from some model files</li>
  * <li>generates model pages from the domain model</li>
  * </ul>
  *
@@ -42,14 +46,20 @@ public class ModelSite implements Site {
     public static ModelSite withForms(File formsFolder) {
         return new ModelSite().initialize(formsFolder); }
 
+    private File formsFolder;
+    public File formsFolder() { return this.formsFolder; }
+    private File formFile(String formName) { return new File(formsFolder(), formName + pageType()); }
+
     static final String Format = "UTF-8";
-    private final Configuration cfg = new Configuration();
+    private final ModelWrapper wrapper = new ModelWrapper();
+    private final Configuration cfg = new Configuration(ModelWrapper.Current);
     private Template getForm(String formName) { return nullOrTryLoudly(() -> this.cfg.getTemplate(formName)); }
     private ModelSite initialize(File formsFolder) {
+        this.formsFolder = formsFolder;
         runLoudly(() -> { // configure FreeMarker
             cfg.setDirectoryForTemplateLoading(formsFolder);
             cfg.setTemplateExceptionHandler(HTML_DEBUG_HANDLER);
-            cfg.setObjectWrapper(new DefaultObjectWrapper());
+            cfg.setObjectWrapper(wrapper); // adapts the model objects, see ModelWrapper
             cfg.setDefaultEncoding(Format);
         });
         return this;
@@ -60,6 +70,7 @@ public class ModelSite implements Site {
         this.domainFolder = baseFolders[1]; // briefs
         this.pageFolder   = baseFolders[2]; // topics
         this.imageFolder  = baseFolders[3]; // images
+        this.briefIndex   = BriefIndex.of(domainFolder());
 
         runQuietly(() -> {
             pageFolder().mkdirs();
@@ -87,8 +98,58 @@ public class ModelSite implements Site {
     private File domainFolder;
     @Override public File domainFolder() { return this.domainFolder; }
 
-    public ModelSite withFacts(File factsFile) { readDomainFacts(factsFile); return this; }
-    void readDomainFacts(File factsFile) { new FactParser(factsFile).parseTokens(); }
+    private volatile BriefIndex briefIndex = BriefIndex.of(null); // lists the briefs folder once per build, see withBases
+    @Override public BriefIndex briefIndex() { return this.briefIndex; }
+
+    private final ArrayList<File> factsFiles = emptyList();
+    public List<File> factsFiles() { return this.factsFiles; }
+    public ModelSite withFacts(File... factsFiles) { return withFacts(wrap(factsFiles)); }
+    public ModelSite withFacts(List<File> factsFiles) {
+        this.factsFiles.addAll(factsFiles); readDomainFacts(factsFiles); return this; }
+
+    void readDomainFacts(List<File> factsFiles) {
+        Set<String> factNames = new HashSet(mapList(factsFiles, file -> file.getName()));
+        if (!isIncremental()) briefIndex().prefetch(brief -> !factNames.contains(brief.file().getName())); // while parsing
+        DomainSnapshot snapshot = usesSnapshots() ? DomainSnapshot.from(snapshotFile(), hashFacts(factsFiles)) : null;
+        if (hasSome(snapshot) && hasSome(snapshot.loadDomain())) return;
+        int errorCount = parseDomainFacts(factsFiles);
+        if (hasSome(snapshot) && errorCount == 0) snapshot.save(getDomain()); }
+
+    int parseDomainFacts(List<File> factsFiles) { // returns the syntax error count
+        if (factsFiles.size() == 1 && chunkSize() == 0) {
+            FactParser parser = new FactParser(factsFiles.get(0));
+            parser.parseTokens();
+            return parser.errorCount();
+        }
+
+        FactLoader loader = FactLoader.from(factsFiles).withThreads(threadCount()).withChunks(chunkSize());
+        loader.loadDomain();
+        return loader.errorCount(); }
+
+    static final String SnapshotName = ".syntopica-snapshot";
+    private File snapshotFile() { return new File(baseFolder(), SnapshotName); }
+    private static String hashFacts(List<File> factsFiles) {
+        return SiteManifest.digest(mapList(factsFiles, file -> file.getName() + Blank + SiteManifest.digest(file))); }
+
+    private boolean snapshots = false; // saves the parsed domain, and loads it while the facts stay unchanged
+    public boolean usesSnapshots() { return this.snapshots; }
+    public ModelSite withSnapshots(boolean snapshots) { this.snapshots = snapshots; return this; }
+
+    private int chunkSize = 0; // bytes per chunk of a fact file, see FactSplitter
+    public int chunkSize() { return this.chunkSize; }
+    public ModelSite withChunks(int chunkSize) { this.chunkSize = Math.max(0, chunkSize); return this; }
+
+    private String factsHash; // of facts read from a stream
+    private String factsHash() {
+        if (factsFiles().isEmpty()) return this.factsHash;
+        return SiteManifest.digest(mapList(factsFiles(), file -> manifest.contentHash(file))); }
+    public ModelSite withFacts(InputStream stream, String sourceName) {
+        runLoudly(() -> {
+            MessageDigest md = SiteManifest.digester();
+            FactParser.streaming(new DigestInputStream(stream, md), sourceName).parseTokens();
+            this.factsHash = SiteManifest.hex(md.digest());
+        });
+        return this; }
     public Domain getDomain() { return Domain.getCurrentDomain(); }
 
     public void mapTopic(Topic topic) {
@@ -107,6 +168,13 @@ public class ModelSite implements Site {
     private final HashMap<String, String> pluralLinks = emptyMap();
     @Override public HashMap<String, String> pluralLinks() { return this.pluralLinks; }
 
+    private TopicLinker topicLinker; // compiled once per build, after mapping the topics
+    private TopicLinker topicLinker() { if (hasNo(topicLinker)) topicLinker = TopicLinker.from(this); return topicLinker; }
+    @Override public String linkTopics(String text) { return topicLinker().link(text); }
+
+    private ReferenceIndex references; // built once per build, after reading the discussions
+    public String formatReferences(String page) { return this.references.formatReferences(page); }
+
     private String pageType = HyperText;
     @Override public String pageType() { return this.pageType; }
     public ModelSite withMarkdown() { this.pageType = MarkDown; return this; }
@@ -117,52 +185,181 @@ public class ModelSite implements Site {
     private String imageBase = Empty;
     @Override public String imageBase() { return this.imageBase; }
 
+    private boolean compiled = false; // renders pages with forms compiled at first use, see FormCompiler
+    public boolean usesCompiledForms() { return this.compiled; }
+    public ModelSite withCompiledForms(boolean compiled) { this.compiled = compiled; return this; }
+
+    private final ConcurrentHashMap<String, Optional<FormCompiler.Form>> compiledForms = new ConcurrentHashMap();
+    private FormCompiler.Form compiledForm(String formName, String[] rootNames) {
+        if (!usesCompiledForms()) return null;
+        return compiledForms.computeIfAbsent(formName,
+            name -> Optional.ofNullable(FormCompiler.compile(formFile(name), rootNames))).orElse(null); }
+
+    private final PageOutput output = PageOutput.create(); // per build
+    public PageOutput output() { return this.output; }
+    public ModelSite withUnchangedKept(boolean keeping) { output().skippingUnchanged(keeping); return this; }
+    public ModelSite withArchive(File archiveFile) { // rather than page folders
+        if (hasSome(archiveFile)) output().archivingTo(archiveFile, baseFolder()); return this; }
+
+    private int threadCount = 1;
+    public int threadCount() { return this.threadCount; }
+    public ModelSite withThreads(int count) { this.threadCount = Math.max(1, count); return this; }
+
+    private SiteManifest manifest; // only for incremental builds
+    public boolean isIncremental() { return hasSome(this.manifest) && !output().archives(); } // an archive holds every page
+    public ModelSite withIncrements(boolean incremental) {
+        this.manifest = incremental ? SiteManifest.from(baseFolder()) : null; return this; }
+
     static final String PageReport = "generated %d pages for: '%s'";
+    static final String SkipReport = "skipped %d unchanged pages";
     public void generatePages() {
         List<Topic> topics = getDomain().getTopics().getItems();
         topics.forEach((topic) -> mapTopic(topic));
-        topics.forEach((topic) -> generatePage(topic));
-        generateInventory();
-        report(format(PageReport, topics.size(), getDomain().getName())); }
+        this.topicLinker = TopicLinker.from(this);
+        getDomain().resolveTopics(); // no topics get registered while rendering
+        getDomain().indexFacts(); // for the backlinks of each page
+
+        boolean[] stale = findStalePages(topics);
+        int staleCount = 0;
+        for (boolean s : stale) if (s) staleCount++;
+        if (isIncremental()) briefIndex().prefetch(staleBriefs(topics, stale)); // only those of the stale pages
+
+        // each discussion fills the linked topics needed by every page
+        String[] discussions = new String[topics.size()];
+        if (staleCount > 0) renderEach(topics.size(), (index) -> {
+            if (stale[index]) discussions[index] = topics.get(index).buildDiscussion();
+            else topics.get(index).readLinkedTopics(); });
+
+        this.references = ReferenceIndex.from(getLinkedTopics()); // each page defines only what it uses
+        renderEach(topics.size(), (index) -> output().ordered(index, () -> { // so an archive streams them in topic order
+            if (stale[index]) generatePage(topics.get(index), discussions[index]); }));
+        if (inventoryChanged()) generateInventory();
+        if (isIncremental()) { removeDroppedOutputs(); this.manifest.save(); }
+
+        report(format(PageReport, staleCount, getDomain().getName()));
+        if (isIncremental()) report(format(SkipReport, topics.size() - staleCount));
+        output().close();
+        output().reportOutput(); }
+
+    private boolean[] findStalePages(List<Topic> topics) {
+        boolean[] results = new boolean[topics.size()];
+        if (!isIncremental()) { Arrays.fill(results, true); return results; }
+
+        String siteHash = hashSiteInputs(topics);
+        for (int index = 0; index < results.length; index++) results[index] = pageChanged(topics.get(index), siteHash);
+        return results; }
+
+    private static List<BriefIndex.Brief> staleBriefs(List<Topic> topics, boolean[] stale) {
+        List<BriefIndex.Brief> results = emptyList();
+        for (int index = 0; index < stale.length; index++) {
+            BriefIndex.Brief brief = stale[index] ? topics.get(index).brief() : null;
+            if (hasSome(brief)) results.add(brief);
+        }
+        return results; }
+
+    private static List<String> inputsFrom(String... inputs) { return new ArrayList(Arrays.asList(inputs)); }
+    private String hashSiteInputs(List<Topic> topics) { // the inputs shared by every topic page
+        List<String> inputs = inputsFrom(pageType(), linkBase(), imageBase(), manifest.contentHash(formFile(PageTemplate)));
+        inputs.addAll(new TreeSet(topicLinks().keySet()));
+        topics.forEach(topic -> inputs.add(manifest.linkHash(topic.domainFile(), topic.brief())));
+        return SiteManifest.digest(inputs); }
+
+    static final String PageKey = "page:";
+    static final String ImageKey = "image:";
+    static final String RemoveReport = "removed %d outdated files";
+    private void removeDroppedOutputs() { // the pages and diagrams of any topics and facts no longer in the domain
+        List<File> dropped = manifest.droppedOutputs(PageKey, ImageKey);
+        dropped.forEach(file -> file.delete());
+        if (!dropped.isEmpty()) report(format(RemoveReport, dropped.size())); }
+    private boolean pageChanged(Topic topic, String siteHash) {
+        File pageFile = pageFile(topic);
+        List<String> inputs = inputsFrom(siteHash, topic.getTitle(), Boolean.toString(topic.isDefined()));
+        inputs.add(manifest.contentHash(topic.domainFile(), topic.brief()));
+        boolean imagesExist = true;
+        for (Fact fact : topic.getFacts()) {
+            inputs.add(fact.getMessage() + Blank + fact.definedTopic());
+            File imageFile = imageFile(topic, fact);
+            manifest.produced(ImageKey + manifest.keyFor(imageFile));
+            imagesExist &= imageFile.exists();
+        }
+        topic.getReferringFacts().forEach(fact -> inputs.add(fact.getMessage()));
+
+        boolean changed = manifest.changed(PageKey + manifest.keyFor(pageFile), SiteManifest.digest(inputs));
+        return changed || !pageFile.exists() || !imagesExist; }
+
+    static final String InventoryKey = "inventory";
+    private boolean inventoryChanged() {
+        if (!isIncremental()) return true;
+        List<String> inputs = inputsFrom(pageType(), manifest.contentHash(formFile(InventoryTemplate)));
+        inputs.add(factsHash());
+        getDomain().getItems().forEach(topic -> inputs.add(topic.getTitle()));
+        return manifest.changed(InventoryKey, SiteManifest.digest(inputs)) || !inventoryFile().exists(); }
+
+    /**
+     * Renders each indexed item, either serially or concurrently (with a thread count > 1).
+     * Each rendering thread gets bound to the build context of this site, and to its domain.
+     */
+    private void renderEach(int count, IntConsumer renderer) {
+        if (threadCount() < 2) { for (int index = 0; index < count; index++) renderer.accept(index); return; }
+
+        Domain domain = getDomain();
+        BuildContext context = BuildContext.current();
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount());
+        try {
+            List<Future<?>> results = emptyList();
+            for (int index = 0; index < count; index++) {
+                final int item = index;
+                results.add(pool.submit(context.within(() -> renderWithin(domain, () -> renderer.accept(item)))));
+            }
+            results.forEach(result -> runLoudly(() -> result.get()));
+        }
+        finally { pool.shutdown(); }
+    }
+
+    private void renderWithin(Domain domain, Runnable renderer) {
+        Domain.bind(domain);
+        try { renderer.run(); } finally { Domain.release(); } }
 
     static final String DomainInventory = "domain-inventory";
+    private File inventoryFile() { return new File(baseFolder(), DomainInventory + pageType()); }
     static final String InventoryTemplate = "inventory-template";
     private void generateInventory() {
-        final HashMap<String, Object> rootMap = new HashMap();
-        rootMap.put("domain", getDomain());
-        rootMap.put("pageType", pageType());
-        rootMap.put("site", this);
+        renderPage(inventoryFile(), InventoryTemplate, InventoryRoots, getDomain(), pageType(), this);
+    }
 
-        File pageFile = new File(baseFolder(), DomainInventory + pageType());
-        writePage(pageFile, (Writer writer) -> getForm(InventoryTemplate + pageType()).process(rootMap, writer));
+    static final String[] InventoryRoots = { "domain", "pageType", "site" };
+    static final String[] PageRoots = { "topic", "domain", "discussion", "pageType", "site" };
+    static final String FallbackReport = "rendering %s with FreeMarker: %s";
+    private void renderPage(File pageFile, String formName, String[] rootNames, Object... roots) {
+        FormCompiler.Form form = compiledForm(formName, rootNames);
+        if (hasSome(form)) {
+            StringBuilder page = new StringBuilder();
+            try { form.render(page, roots); output().write(pageFile, page); return; }
+            catch (FormCompiler.Unsupported e) { whisper(format(FallbackReport, pageFile.getName(), e.getMessage())); }
+        }
+
+        ModelWrapper.Page rootMap = wrapper.page();
+        for (int index = 0; index < roots.length; index++) rootMap.with(rootNames[index], roots[index]);
+        writePage(pageFile, (Writer writer) -> rootMap.process(getForm(formName + pageType()), writer));
     }
 
     static final String Graphics = ".svg";
+    private File imageFile(Topic topic, Fact fact) { return new File(imageFolder(), topic.formImageName(fact) + Graphics); }
+    private File pageFile(Topic topic) { return new File(pageFolder(), topic.getLinkFileName(pageType())); }
     static final String PageTemplate = "page-template";
-    private void generatePage(final Topic topic) {
-//        Fact[] facts = topic.getLinkedFacts();
+    private void generatePage(final Topic topic, String discussion) {
         for (Fact fact : topic.getLinkedFacts()) {
             String diagram = topic.buildDiagramSVG(fact);
-            File imageFile = new File(imageFolder(), topic.formImageName(fact) + Graphics);
-            writePage(imageFile, (Writer writer) -> writer.write(diagram));
+            File imageFile = imageFile(topic, fact);
+            output().write(imageFile, diagram);
         }
 
-        String discussion = topic.buildDiscussion();
-        final HashMap<String, Object> rootMap = new HashMap();
-        rootMap.put("topic", topic);
-        rootMap.put("domain", getDomain());
-        rootMap.put("discussion", discussion);
-        rootMap.put("pageType", pageType());
-        rootMap.put("site", this);
-
-        File pageFile = new File(pageFolder(), topic.getLinkFileName(pageType()));
-        writePage(pageFile, (Writer writer) -> getForm(PageTemplate + pageType()).process(rootMap, writer));
+        renderPage(pageFile(topic), PageTemplate, PageRoots, topic, getDomain(), discussion, pageType(), this);
     }
 
-    private OutputStreamWriter buildWriter(File pageFile) throws IOException {
-        return new OutputStreamWriter(new FileOutputStream(pageFile)); }
-
-    private void writePage(File pageFile, PageWriter pageWriter) {
-        runLoudly(() -> { try (Writer writer = buildWriter(pageFile)) { pageWriter.writePage(writer); } }); }
+    private void writePage(File pageFile, PageWriter pageWriter) { // renders a whole page, then writes it at once
+        StringBuilderWriter writer = new StringBuilderWriter();
+        runLoudly(() -> pageWriter.writePage(writer));
+        output().write(pageFile, writer.getBuilder()); }
 
 } // ModelSite
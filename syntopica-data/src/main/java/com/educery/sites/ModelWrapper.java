@@ -0,0 +1,230 @@
+package com.educery.sites;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Supplier;
+import freemarker.template.*;
+import freemarker.template.utility.DeepUnwrap;
+import freemarker.ext.util.WrapperTemplateModel;
+
+import com.educery.concepts.*;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Wraps the model objects of a site for its templates with hand-written adapters, rather than
+ * introspecting them reflectively (as bean models) during each access.
+ * Each adapter knows the members its type offers the templates (e.g., topic.formatFact(fact), topic.facts),
+ * and falls back to a bean model for any other member, so that revised forms still work.
+ * Each page gets its own model (see page), which wraps each model object (and each sequence its members return)
+ * at most once while rendering that page, including those FreeMarker wraps through this wrapper (see Page.process).
+ *
+ * <h4>ModelWrapper Responsibilities:</h4>
+ * <ul>
+ * <li>adapts topics, facts, domains, and sites for the templates</li>
+ * <li>adapts lists and arrays as sequences, wrapping their items as needed</li>
+ * <li>wraps any other objects as the default object wrapper does</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>render each page with a fresh page model (see Page.process), and from a single thread</li>
+ * </ul>
+ */
+public class ModelWrapper extends DefaultObjectWrapper {
+
+    public static final Version Current = Configuration.VERSION_2_3_31;
+    public ModelWrapper() { super(Current); }
+
+    public Page page() { return new Page(); }
+    private final ThreadLocal<Page> rendering = new ThreadLocal(); // the page being rendered by each thread, if any
+    @Override public TemplateModel wrap(Object item) throws TemplateModelException {
+        Page page = rendering.get(); return (hasSome(page) ? page : page()).wrap(item); }
+    TemplateModel wrapOther(Object item) throws TemplateModelException { return super.wrap(item); }
+
+    /**
+     * A template member: a method (given its arguments) or a property (without any).
+     */
+    static interface Member<T> {
+
+        Object apply(T item, Arguments args) throws TemplateModelException;
+
+    } // Member
+
+    /**
+     * The arguments passed to a method member, unwrapped as needed (see FormCompiler for plain arguments).
+     */
+    static class Arguments {
+
+        static final Arguments None = new Arguments(Collections.emptyList());
+        private final List<?> args;
+        Arguments(List<?> args) { this.args = args; }
+
+        int size() { return this.args.size(); }
+        Object get(int index) throws TemplateModelException {
+            Object arg = args.get(index);
+            return arg instanceof TemplateModel ? DeepUnwrap.unwrap((TemplateModel) arg) : arg; }
+        Fact fact(int index) throws TemplateModelException { return (Fact) get(index); }
+        String string(int index) throws TemplateModelException { return String.valueOf(get(index)); }
+
+    } // Arguments
+
+    /**
+     * The members a model type offers its templates.
+     */
+    static class Members<T> {
+
+        final HashMap<String, Member<T>> methods = emptyMap();
+        final HashMap<String, Member<T>> properties = emptyMap();
+        Members<T> method(String name, Member<T> m) { methods.put(name, m); return this; }
+        Members<T> property(String name, Member<T> p) { properties.put(name, p); return this; }
+        Members<T> both(String name, String property, Member<T> m) { return method(name, m).property(property, m); }
+
+    } // Members
+
+    static final Members<Topic> TopicMembers = new Members<Topic>()
+        .method("titleSubject", (t, a) -> t.titleSubject())
+        .method("formatReference", (t, a) -> t.formatReference())
+        .method("formatSubjectLink", (t, a) -> t.formatSubjectLink())
+        .method("formatFact", (t, a) -> a.size() > 1 ? t.formatFact(a.fact(0), a.string(1)) : t.formatFact(a.fact(0)))
+        .method("formatBacklink", (t, a) -> t.formatBacklink(a.fact(0)))
+        .method("formImageName", (t, a) -> t.formImageName(a.fact(0)))
+        .method("formatRefLinks", (t, a) -> t.formatRefLinks())
+        .method("formatLinkedReferences", (t, a) -> t.formatLinkedReferences())
+        .method("hasLinkedTopics", (t, a) -> t.hasLinkedTopics())
+        .method("hasReferringFacts", (t, a) -> t.hasReferringFacts())
+        .both("getReferringFacts", "referringFacts", (t, a) -> t.getReferringFacts())
+        .both("getFacts", "facts", (t, a) -> t.getFacts())
+        .both("getTitle", "title", (t, a) -> t.getTitle())
+        .both("getSubject", "subject", (t, a) -> t.getSubject())
+        .both("getArticle", "article", (t, a) -> t.getArticle());
+
+    static final Members<Fact> FactMembers = new Members<Fact>()
+        .both("getKey", "key", (f, a) -> f.getKey())
+        .both("getVerb", "verb", (f, a) -> f.getVerb())
+        .both("getMessage", "message", (f, a) -> f.getMessage());
+
+    static final Members<Domain> DomainMembers = new Members<Domain>()
+        .both("getName", "name", (d, a) -> d.getName())
+        .both("getTitle", "title", (d, a) -> d.getTitle())
+        .both("getItems", "items", (d, a) -> d.getItems());
+
+    static final Members<ModelSite> SiteMembers = new Members<ModelSite>()
+        .method("formatReferences", (s, a) -> s.formatReferences(a.string(0)))
+        .both("getLinkedTopics", "linkedTopics", (s, a) -> s.getLinkedTopics())
+        .both("pageType", "pageType", (s, a) -> s.pageType());
+
+    static Members membersOf(Object item) {
+        if (item instanceof Topic) return TopicMembers;
+        if (item instanceof Fact) return FactMembers;
+        if (item instanceof Domain) return DomainMembers;
+        if (item instanceof ModelSite) return SiteMembers;
+        return null; }
+
+    static boolean hasMember(String name) {
+        for (Members m : Arrays.asList(TopicMembers, FactMembers, DomainMembers, SiteMembers)) {
+            if (m.methods.containsKey(name) || m.properties.containsKey(name)) return true;
+        }
+        return false; }
+
+    /**
+     * The model of a page: its root values, and the models wrapped while rendering it.
+     */
+    public class Page implements TemplateHashModel {
+
+        private final HashMap<String, Object> values = emptyMap();
+        private final IdentityHashMap<Object, TemplateModel> models = new IdentityHashMap();
+        public Page with(String name, Object value) { values.put(name, value); return this; }
+
+        /**
+         * Renders a form with this page, which then also wraps any values FreeMarker wraps outside of it.
+         * @param form a page form
+         * @param writer receives the page
+         */
+        public void process(Template form, Writer writer) throws TemplateException, IOException {
+            Page prior = rendering.get();
+            rendering.set(this);
+            try { form.process(this, writer); }
+            finally { if (hasSome(prior)) rendering.set(prior); else rendering.remove(); } }
+
+        @Override public boolean isEmpty() { return values.isEmpty(); }
+        @Override public TemplateModel get(String name) throws TemplateModelException {
+            return values.containsKey(name) ? wrap(values.get(name)) : null; }
+
+        TemplateModel wrap(Object item) throws TemplateModelException {
+            Members members = membersOf(item);
+            if (hasSome(members)) return adapt(item, () -> new Adapter(this, item, members));
+            if (item instanceof List) return adapt(item, () -> new Sequence(this, (List) item));
+            if (item instanceof Object[]) return adapt(item, () -> new Sequence(this, Arrays.asList((Object[]) item)));
+            if (item instanceof String) return new SimpleScalar((String) item);
+            if (item instanceof Boolean) return ((Boolean) item) ? TemplateBooleanModel.TRUE : TemplateBooleanModel.FALSE;
+            return wrapOther(item); }
+
+        private TemplateModel adapt(Object item, Supplier<TemplateModel> adapter) {
+            TemplateModel result = models.get(item);
+            if (hasNo(result)) models.put(item, result = adapter.get());
+            return result; }
+
+        TemplateModel fallback(Object item) throws TemplateModelException { return wrapOther(item); }
+
+    } // Page
+
+    /**
+     * Adapts a model object, caching its properties and methods for the page being rendered.
+     */
+    static class Adapter<T> implements TemplateHashModel, WrapperTemplateModel {
+
+        private final Page page; private final T item; private final Members<T> members;
+        Adapter(Page page, T item, Members<T> members) { this.page = page; this.item = item; this.members = members; }
+        @Override public Object getWrappedObject() { return this.item; }
+        @Override public boolean isEmpty() { return false; }
+
+        private final HashMap<String, TemplateModel> cache = new HashMap(4);
+        private TemplateHashModel fallback; // a bean model, for any other members
+        @Override public TemplateModel get(String key) throws TemplateModelException {
+            TemplateModel result = cache.get(key);
+            if (hasSome(result)) return result;
+
+            Member<T> property = members.properties.get(key);
+            Member<T> method = members.methods.get(key);
+            if (hasSome(property)) result = page.wrap(property.apply(item, Arguments.None));
+            else if (hasSome(method)) result = new Method(method);
+            else return fallback().get(key);
+            cache.put(key, result);
+            return result; }
+
+        private TemplateHashModel fallback() throws TemplateModelException {
+            if (hasNo(fallback)) fallback = (TemplateHashModel) page.fallback(item); return fallback; }
+
+        /**
+         * Invokes a method member, reusing the sequence it returns (if any) once called without arguments.
+         */
+        class Method implements TemplateMethodModelEx {
+
+            private final Member<T> member; private TemplateModel sequence;
+            Method(Member<T> member) { this.member = member; }
+
+            @Override public Object exec(List args) throws TemplateModelException {
+                if (hasSome(sequence) && args.isEmpty()) return sequence;
+                TemplateModel result = page.wrap(member.apply(item, args.isEmpty() ? Arguments.None : new Arguments(args)));
+                if (args.isEmpty() && result instanceof Sequence) sequence = result;
+                return result; }
+
+        } // Method
+
+    } // Adapter
+
+    /**
+     * Adapts a list (or an array) as a sequence, wrapping each item once its template reaches it.
+     */
+    static class Sequence implements TemplateSequenceModel, WrapperTemplateModel {
+
+        private final Page page; private final List<?> items;
+        Sequence(Page page, List<?> items) { this.page = page; this.items = items; }
+        @Override public Object getWrappedObject() { return this.items; }
+        @Override public int size() { return this.items.size(); }
+        @Override public TemplateModel get(int index) throws TemplateModelException {
+            return index < 0 || index >= size() ? null : page.wrap(items.get(index)); }
+
+    } // Sequence
+
+} // ModelWrapper
@@ -0,0 +1,229 @@
+package com.educery.sites;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+import java.nio.*;
+import java.nio.file.Path;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.util.concurrent.atomic.LongAdder;
+import static java.nio.file.StandardOpenOption.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.educery.utils.*;
+import static com.educery.utils.Utils.*;
+import static com.educery.utils.Exceptional.*;
+
+/**
+ * Writes the generated pages (and diagrams) of a site, encoding each as UTF-8 into a buffer that gets reused
+ * (one per rendering thread), and then handing the whole buffer to a sink.
+ * By default, the sink writes each page into its folder through a file channel at once.
+ * Optionally compares the bytes of each page with those of its prior file, and leaves an unchanged file alone
+ * (neither rewritten nor touched).
+ * Alternatively, an archive sink streams the pages into a single zip archive, which mirrors the folders of the site.
+ * Counts the files and bytes it writes during a build.
+ *
+ * <h4>PageOutput Responsibilities:</h4>
+ * <ul>
+ * <li>encodes each page as UTF-8, regardless of the platform charset</li>
+ * <li>writes each page with a single channel write (usually), or into an archive</li>
+ * <li>skips unchanged pages, if so configured</li>
+ * <li>reports the files and bytes written</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>write the pages of each topic in its own slot (see ordered), so that any archive can stream them in order</li>
+ * <li>close an output after writing its pages (which finishes any archive)</li>
+ * </ul>
+ */
+public class PageOutput implements Logging {
+
+    private PageOutput() { }
+    public static PageOutput create() { return new PageOutput(); }
+
+    /**
+     * Receives the encoded pages of a site.
+     */
+    public static interface Sink {
+
+        void write(File file, ByteBuffer page) throws IOException;
+        default void ordered(int slot, Runnable writes) throws IOException { writes.run(); }
+        default boolean isFolder() { return true; }
+        default void close() throws IOException { }
+
+    } // Sink
+
+    private Sink sink = (file, page) -> { // writes into the page folders, by default
+        try (FileChannel channel = FileChannel.open(file.toPath(), WRITE, CREATE, TRUNCATE_EXISTING)) {
+            while (page.hasRemaining()) channel.write(page);
+        }
+    };
+
+    public PageOutput archivingTo(File archiveFile, File baseFolder) { this.sink = new Archive(archiveFile, baseFolder); return this; }
+    public boolean archives() { return !this.sink.isFolder(); }
+    public void close() { runLoudly(() -> sink.close()); }
+
+    /**
+     * Writes some pages in a numbered slot, so that an archive holds them after those of every prior slot.
+     * @param slot a slot number, from 0 up to the number of slots, each used once per build
+     * @param writes writes the pages of the slot
+     */
+    public void ordered(int slot, Runnable writes) { runLoudly(() -> sink.ordered(slot, writes)); }
+
+    private boolean skipsUnchanged = false;
+    public boolean skipsUnchanged() { return this.skipsUnchanged; }
+    public PageOutput skippingUnchanged(boolean skipping) { this.skipsUnchanged = skipping; return this; }
+
+    private final LongAdder fileCount = new LongAdder();
+    private final LongAdder byteCount = new LongAdder();
+    private final LongAdder skipCount = new LongAdder();
+    public long countFiles() { return this.fileCount.sum(); }
+    public long countBytes() { return this.byteCount.sum(); }
+    public long countSkipped() { return this.skipCount.sum(); }
+
+    static final String WriteReport = "wrote %d files (%d bytes)";
+    static final String KeptReport = "kept %d unchanged files";
+    public void reportOutput() {
+        report(format(WriteReport, countFiles(), countBytes()));
+        if (skipsUnchanged()) report(format(KeptReport, countSkipped())); }
+
+    static final int BufferSize = 64 * 1024;
+
+    /**
+     * The buffers of a rendering thread.
+     */
+    static class Buffers {
+
+        final CharsetEncoder encoder = UTF_8.newEncoder() // replaces malformed text, as a stream writer does
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(BufferSize);
+        ByteBuffer prior = ByteBuffer.allocate(BufferSize);
+
+        ByteBuffer encode(CharSequence text) {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset(); bytes.clear();
+            while (encoder.encode(chars, bytes, true).isOverflow()) bytes = grow(bytes);
+            while (encoder.flush(bytes).isOverflow()) bytes = grow(bytes);
+            bytes.flip();
+            return bytes; }
+
+        static ByteBuffer grow(ByteBuffer buffer) {
+            ByteBuffer result = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip(); result.put(buffer);
+            return result; }
+
+        boolean matches(File file, ByteBuffer page) throws IOException {
+            if (!file.isFile() || file.length() != page.remaining()) return false;
+            if (prior.capacity() < page.remaining()) prior = ByteBuffer.allocate(page.capacity());
+            prior.clear(); prior.limit(page.remaining());
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                while (prior.hasRemaining() && channel.read(prior) >= 0) { }
+            }
+            prior.flip();
+            return prior.equals(page); }
+
+    } // Buffers
+
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(() -> new Buffers());
+
+    /**
+     * Writes a page, unless skipping it unchanged.
+     * @param file a page file
+     * @param page the text of the page
+     */
+    public void write(File file, CharSequence page) {
+        Buffers b = buffers.get();
+        ByteBuffer bytes = b.encode(page);
+        runLoudly(() -> {
+            if (skipsUnchanged() && !archives() && b.matches(file, bytes)) { skipCount.increment(); return; }
+            int size = bytes.remaining();
+            sink.write(file, bytes);
+            fileCount.increment();
+            byteCount.add(size);
+        });
+    }
+
+    /**
+     * Streams the pages of a site into a zip archive, named by their paths under the base folder.
+     * Collects the pages written within each numbered slot (e.g., those of a topic), and emits the pages of a slot
+     * once those of every prior slot are out, so that the entries (and their folders) follow the order of the slots,
+     * and carry the same (fixed) time, regardless of the timing of the rendering threads.
+     * So, an archive holds only those slots finished ahead of the earliest unfinished slot.
+     */
+    static class Archive implements Sink, Logging {
+
+        static final long EntryTime = new GregorianCalendar(1980, Calendar.FEBRUARY, 1).getTimeInMillis(); // in DOS local time
+
+        private final File archiveFile; private final Path base;
+        Archive(File archiveFile, File baseFolder) { this.archiveFile = archiveFile; this.base = baseFolder.toPath().toAbsolutePath().normalize(); }
+        @Override public boolean isFolder() { return false; }
+
+        String entryName(File file) {
+            Path path = file.toPath().toAbsolutePath().normalize();
+            String name = (path.startsWith(base) ? base.relativize(path) : path.getFileName()).toString();
+            return name.replace(File.separatorChar, '/'); }
+
+        private final ThreadLocal<LinkedHashMap<String, byte[]>> slotPages = new ThreadLocal();
+        private final TreeMap<Integer, Map<String, byte[]>> finished = new TreeMap(); // ahead of the next slot
+        private int nextSlot = 0;
+
+        @Override public void write(File file, ByteBuffer page) throws IOException {
+            byte[] bytes = new byte[page.remaining()];
+            page.get(bytes);
+            Map<String, byte[]> pages = slotPages.get();
+            if (hasSome(pages)) pages.put(entryName(file), bytes); // the last page written wins, as in a folder
+            else synchronized (this) { emit(entryName(file), bytes); } // outside any slot, e.g., an inventory
+        }
+
+        @Override public void ordered(int slot, Runnable writes) throws IOException {
+            LinkedHashMap<String, byte[]> pages = new LinkedHashMap();
+            slotPages.set(pages);
+            try { writes.run(); }
+            finally { slotPages.remove(); finish(slot, pages); }
+        }
+
+        private synchronized void finish(int slot, Map<String, byte[]> pages) throws IOException {
+            finished.put(slot, pages);
+            while (finished.containsKey(nextSlot)) emitAll(finished.remove(nextSlot++));
+        }
+
+        private void emitAll(Map<String, byte[]> pages) throws IOException {
+            for (Map.Entry<String, byte[]> page : pages.entrySet()) emit(page.getKey(), page.getValue()); }
+
+        private ZipOutputStream zip;
+        private final HashSet<String> names = new HashSet(); // emitted already
+        static final String DuplicateReport = "archived only the first page named: %s";
+        private void emit(String name, byte[] page) throws IOException {
+            for (int slash = name.indexOf('/'); slash > 0; slash = name.indexOf('/', slash + 1)) {
+                String folder = name.substring(0, slash + 1);
+                if (names.add(folder)) putEntry(folder, null); // its folders
+            }
+            if (names.add(name)) putEntry(name, page);
+            else whisper(format(DuplicateReport, name));
+        }
+
+        private void putEntry(String name, byte[] page) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(EntryTime);
+            zip().putNextEntry(entry);
+            if (hasSome(page)) zip().write(page);
+            zip().closeEntry(); }
+
+        private ZipOutputStream zip() throws IOException {
+            if (hasSome(zip)) return zip;
+            File folder = archiveFile.getAbsoluteFile().getParentFile();
+            if (hasSome(folder)) folder.mkdirs();
+            zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile), BufferSize));
+            return zip; }
+
+        @Override public synchronized void close() throws IOException {
+            for (Map<String, byte[]> pages : finished.values()) emitAll(pages); // after any skipped slots
+            finished.clear();
+            zip().close();
+            zip = null; names.clear(); nextSlot = 0; }
+
+    } // Archive
+
+} // PageOutput
@@ -0,0 +1,198 @@
+package com.educery.sites;
+
+import java.io.*;
+import java.util.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.nio.channels.FileChannel;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.educery.utils.Logging;
+import com.educery.utils.BriefIndex.Brief;
+import static com.educery.utils.Utils.*;
+import static com.educery.utils.Exceptional.*;
+import static com.educery.utils.LineBuilder.Equal;
+
+/**
+ * Records the content hashes of the inputs to a generated site, so that later builds can skip any pages
+ * whose inputs did not change.
+ *
+ * <h4>SiteManifest Responsibilities:</h4>
+ * <ul>
+ * <li>knows the hashes recorded during a prior build</li>
+ * <li>knows the size, time, and content hash of each input file</li>
+ * <li>hashes only those input files whose size or time changed</li>
+ * <li>knows whether the inputs of a generated page changed</li>
+ * <li>knows the outputs a prior build produced, but the current build does not</li>
+ * <li>saves the hashes recorded during the current build</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply a base folder during construction</li>
+ * <li>save a manifest after generating the pages it covers</li>
+ * </ul>
+ */
+public class SiteManifest implements Logging {
+
+    static final String ManifestName = ".syntopica-manifest";
+    private SiteManifest(File baseFolder) {
+        this.baseFolder = baseFolder; this.manifestFile = new File(baseFolder, ManifestName); }
+    public static SiteManifest from(File baseFolder) { return new SiteManifest(baseFolder).load(); }
+
+    private final File baseFolder;
+    private final File manifestFile;
+    public File manifestFile() { return this.manifestFile; }
+    public String keyFor(File file) { // relative to the base folder
+        return baseFolder.toPath().relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separator, Slash); }
+
+    private final TreeMap<String, String> priorEntries = new TreeMap();
+    private final TreeMap<String, String> entries = new TreeMap();
+    public boolean isEmpty() { return this.priorEntries.isEmpty(); }
+
+    static final String Tab = "\t";
+    private SiteManifest load() {
+        if (!manifestFile().exists()) return this;
+        runLoudly(() -> Files.readAllLines(manifestFile().toPath(), UTF_8).forEach(line -> {
+            int tab = line.indexOf(Tab);
+            if (tab > 0) this.priorEntries.put(line.substring(0, tab), line.substring(tab + 1));
+        }));
+        return this;
+    }
+
+    static final String ManifestReport = "recorded %d entries in: %s";
+    public void save() {
+        List<String> lines = mapList(entries.keySet(), key -> key + Tab + entries.get(key));
+        runLoudly(() -> Files.write(manifestFile().toPath(), lines, UTF_8));
+        whisper(format(ManifestReport, lines.size(), manifestFile().getPath())); }
+
+    /**
+     * Records the hash for some generated output, and reports whether it changed since the prior build.
+     * @param key a key for some generated output
+     * @param inputHash a hash of all the inputs to the output
+     * @return whether the output needs to be generated again
+     */
+    public synchronized boolean changed(String key, String inputHash) {
+        entries.put(key, inputHash);
+        return !inputHash.equals(priorEntries.get(key)); }
+
+    static final String Produced = "produced";
+    public synchronized void produced(String key) { entries.putIfAbsent(key, Produced); } // e.g., a diagram
+
+    /**
+     * Lists the outputs recorded by the prior build (under some keys) that the current build no longer produces.
+     * @param prefixes the prefixes of the output keys, each followed by a path relative to the base folder
+     * @return the output files dropped since the prior build
+     */
+    public synchronized List<File> droppedOutputs(String... prefixes) {
+        List<File> results = emptyList();
+        for (String key : priorEntries.keySet()) for (String prefix : prefixes) {
+            if (key.startsWith(prefix) && !entries.containsKey(key)) results.add(new File(baseFolder, key.substring(prefix.length())));
+        }
+        return results; }
+
+    static final String FileKey = "file:";
+    static final String None = "none";
+
+    /**
+     * Stamps a file with its size, time, and content hash, reusing a prior hash if the size and time match.
+     * @param file an input file
+     * @return a stamp for the file
+     */
+    Stamp stamp(File file) {
+        if (hasNo(file) || !file.exists()) return stamp(file, null);
+        return stamp(file, Brief.of(file)); }
+
+    /**
+     * Stamps a file, given its size and time from a listing of its folder (see BriefIndex).
+     * @param file an input file
+     * @param brief the listed file, or null if missing
+     * @return a stamp for the file
+     */
+    synchronized Stamp stamp(File file, Brief brief) {
+        if (hasNo(file)) return Stamp.Missing;
+        String key = FileKey + keyFor(file);
+        if (hasNo(brief)) { entries.remove(key); return Stamp.Missing; }
+
+        Stamp prior = Stamp.from(priorEntries.get(key));
+        Stamp result = prior.matches(brief) ? prior : Stamp.of(brief);
+        entries.put(key, result.toString());
+        return result;
+    }
+
+    public String contentHash(File file) { return stamp(file).contentHash; }
+    public String linkHash(File file) { return stamp(file).linkHash; }
+    public String contentHash(File file, Brief brief) { return stamp(file, brief).contentHash; }
+    public String linkHash(File file, Brief brief) { return stamp(file, brief).linkHash; }
+
+    /**
+     * Records the size, time, and hashes of an input file.
+     */
+    static class Stamp {
+
+        static final Stamp Missing = new Stamp(-1, -1, None, None);
+        long size; long time; String contentHash; String linkHash;
+        Stamp(long size, long time, String contentHash, String linkHash) {
+            this.size = size; this.time = time; this.contentHash = contentHash; this.linkHash = linkHash; }
+
+        static Stamp of(Brief brief) {
+            byte[] content = defaultOrTryLoudly(() -> Files.readAllBytes(brief.file().toPath()), new byte[0]);
+            String links = linkHeader(new String(content, UTF_8));
+            return new Stamp(brief.size(), brief.time(), digest(content), digest(links)); }
+
+        static Stamp from(String entry) {
+            if (hasNo(entry)) return Missing;
+            String[] parts = entry.split(Tab);
+            if (parts.length < 4) return Missing;
+            return defaultOrTryQuietly(() ->
+                new Stamp(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], parts[3]), Missing); }
+
+        boolean matches(Brief brief) { return this != Missing && size == brief.size() && time == brief.time(); }
+        @Override public String toString() { return size + Tab + time + Tab + contentHash + Tab + linkHash; }
+
+    } // Stamp
+
+    /**
+     * Extracts the link definitions from the head of a topic brief.
+     * @param text the text of a topic brief
+     * @return the leading lines that assign links
+     * @see com.educery.concepts.TopicReader
+     */
+    static String linkHeader(String text) {
+        StringBuilder b = new StringBuilder();
+        for (String line : text.split(NewLine)) {
+            if (!line.contains(Equal)) break;
+            b.append(line.trim()).append(NewLine);
+        }
+        return b.toString(); }
+
+    static final String Digest = "SHA-256";
+    static final char[] HexDigits = "0123456789abcdef".toCharArray();
+    static MessageDigest digester() { return nullOrTryLoudly(() -> MessageDigest.getInstance(Digest)); }
+    public static String digest(byte[] content) { return hex(digester().digest(content)); }
+    public static String digest(String... parts) { return digest(wrap(parts)); }
+    public static String digest(List<String> parts) {
+        MessageDigest md = digester();
+        parts.forEach(part -> { md.update(part.getBytes(UTF_8)); md.update((byte) 0); });
+        return hex(md.digest()); }
+
+    public static String digest(File file) { // without reading the file onto the heap
+        return nullOrTryLoudly(() -> {
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                MessageDigest md = digester();
+                md.update(channel.map(READ_ONLY, 0, channel.size()));
+                return hex(md.digest());
+            }
+        }); }
+
+    static String hex(byte[] hash) {
+        char[] results = new char[hash.length * 2];
+        for (int index = 0; index < hash.length; index++) {
+            results[index * 2] = HexDigits[(hash[index] >> 4) & 0xF];
+            results[index * 2 + 1] = HexDigits[hash[index] & 0xF];
+        }
+        return new String(results); }
+
+} // SiteManifest
@@ -55,9 +55,10 @@ public class Canvas implements Registry.KeySource, Tag.Factory, Closeable {
             ; }
 
 
-    static Canvas ActiveCanvas = null;
-    public static boolean hasActiveCanvas() { return hasSome(ActiveCanvas); }
-    public Canvas activate() { ActiveCanvas = this; return this; }
-    @Override public void close() { ActiveCanvas = null; }
+    // each rendering thread draws on its own canvas
+    static final ThreadLocal<Canvas> ActiveCanvas = new ThreadLocal();
+    public static boolean hasActiveCanvas() { return hasSome(ActiveCanvas.get()); }
+    public Canvas activate() { ActiveCanvas.set(this); return this; }
+    @Override public void close() { ActiveCanvas.remove(); }
 
 } // Canvas
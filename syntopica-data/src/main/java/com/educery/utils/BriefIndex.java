@@ -0,0 +1,133 @@
+package com.educery.utils;
+
+import java.io.*;
+import java.util.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static com.educery.utils.Utils.*;
+import static com.educery.utils.Exceptional.*;
+
+/**
+ * Indexes the topic briefs in a folder, so that a build checks their existence, size, and time
+ * without asking the file system about each topic (esp. those without a brief).
+ * Lists the folder once (during construction), and maps the link name of each brief (its file name without
+ * its extension, e.g., stakeholder.group for stakeholder.group.txt) to its path, size, and time.
+ * A refresh lists the folder again, and reports which briefs changed since the prior listing.
+ *
+ * <p>An index can also start reading its briefs in the background (see prefetch), as soon as the folder gets listed,
+ * so that reading them overlaps with parsing the facts and rendering the pages, rather than adding to both.</p>
+ *
+ * <h4>BriefIndex Responsibilities:</h4>
+ * <ul>
+ * <li>knows a briefs folder, and the briefs it contained when last listed</li>
+ * <li>finds a brief given its link name</li>
+ * <li>reads the text of its briefs concurrently, decoded as UTF-8</li>
+ * <li>lists the folder again, reporting any briefs added, changed, or removed</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>supply a briefs folder (if any) during construction</li>
+ * <li>refresh an index after changing its briefs</li>
+ * </ul>
+ */
+public class BriefIndex implements Logging {
+
+    public static final String Text = ".txt";
+    private BriefIndex(File folder) { this.folder = folder; }
+    public static BriefIndex of(File folder) { return new BriefIndex(folder).list(); }
+
+    private final File folder;
+    public File folder() { return this.folder; }
+
+    /**
+     * A topic brief, and its size and time when listed.
+     */
+    public static class Brief {
+
+        private final File file; private final long size; private final long time;
+        Brief(File file, long size, long time) { this.file = file; this.size = size; this.time = time; }
+        public static Brief of(File file) { return new Brief(file, file.length(), file.lastModified()); }
+
+        public File file() { return this.file; }
+        public long size() { return this.size; }
+        public long time() { return this.time; }
+        boolean matches(Brief b) { return hasSome(b) && b.size == size && b.time == time; }
+
+        private volatile Future<String> content; // if prefetched, until its text gets used
+        public boolean isPrefetched() { return hasSome(this.content); }
+        public String text() { // once prefetched text gets used, it gets dropped from the heap
+            Future<String> f = this.content; this.content = null;
+            return hasSome(f) ? nullOrTryLoudly(() -> f.get()) : read(); }
+        String read() { return nullOrTryLoudly(() -> new String(Files.readAllBytes(file().toPath()), UTF_8)); }
+
+    } // Brief
+
+    private volatile Map<String, Brief> briefs = Collections.emptyMap();
+    public int countBriefs() { return this.briefs.size(); }
+    public boolean hasBrief(String linkName) { return this.briefs.containsKey(linkName); }
+    public Brief find(String linkName) { return this.briefs.get(linkName); }
+    public File fileFor(String linkName) { return new File(folder(), linkName + Text); }
+
+    static final String ListReport = "indexed %d briefs in: %s";
+    private BriefIndex list() { this.briefs = listFolder(); whisper(format(ListReport, countBriefs(), folder())); return this; }
+    private Map<String, Brief> listFolder() {
+        HashMap<String, Brief> results = new HashMap();
+        if (hasNo(folder()) || !folder().isDirectory()) return results;
+        runLoudly(() -> Files.walkFileTree(folder().toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1,
+            new SimpleFileVisitor<Path>() {
+                @Override public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                    String name = path.getFileName().toString();
+                    if (attributes.isRegularFile() && name.endsWith(Text)) {
+                        results.put(name.substring(0, name.length() - Text.length()),
+                            new Brief(path.toFile(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            }));
+        return results; }
+
+    private final LongAdder prefetchCount = new LongAdder();
+    public long countPrefetched() { return this.prefetchCount.sum(); }
+
+    static final int ReaderCount = 4; // reading is bound by the disk, not the processors
+    static final ThreadFactory Readers = task -> { Thread t = new Thread(task, "brief-reader"); t.setDaemon(true); return t; };
+
+    /**
+     * Starts reading the listed briefs concurrently, so that their text is (usually) ready once needed.
+     * @param selection selects the briefs worth reading, e.g., excluding any fact files
+     * @return this index
+     */
+    public BriefIndex prefetch(Predicate<Brief> selection) { return prefetch(select(new ArrayList(briefs.values()), selection)); }
+
+    /**
+     * Starts reading some briefs concurrently, e.g., only those of the pages an incremental build regenerates.
+     * @param selected the briefs worth reading
+     * @return this index
+     */
+    public BriefIndex prefetch(List<Brief> selected) {
+        prefetchCount.add(selected.size());
+        if (selected.isEmpty()) return this;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(ReaderCount, selected.size()), Readers);
+        try { selected.forEach(brief -> brief.content = pool.submit(() -> brief.read())); }
+        finally { pool.shutdown(); } // after reading the submitted briefs
+        return this; }
+
+    /**
+     * Lists the briefs folder again, e.g., while watching it for changes.
+     * @return the link names of any briefs added, changed, or removed since the prior listing
+     */
+    public synchronized Set<String> refresh() {
+        Map<String, Brief> prior = this.briefs;
+        Map<String, Brief> current = listFolder();
+        TreeSet<String> results = new TreeSet();
+        current.forEach((name, brief) -> { if (!brief.matches(prior.get(name))) results.add(name); });
+        prior.keySet().forEach(name -> { if (!current.containsKey(name)) results.add(name); });
+        this.briefs = current;
+        return results; }
+
+} // BriefIndex
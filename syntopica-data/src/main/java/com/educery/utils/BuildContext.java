@@ -0,0 +1,67 @@
+package com.educery.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Isolates the state of one model build (its site, domains, and current domain) from any other build in the same JVM.
+ * The static API (e.g., Site.getSite(), Domain.current()) reads the context bound to the current thread,
+ * else the default context, so that a single build needs no explicit context at all.
+ * Each package keeps its own part of a context (see part), so this class needs no knowledge of the model.
+ *
+ * <h4>BuildContext Responsibilities:</h4>
+ * <ul>
+ * <li>knows the default context, and the context bound to the current thread</li>
+ * <li>knows the site of a build, and the parts kept by other packages</li>
+ * <li>runs a task bound to a context, restoring any prior binding afterwards</li>
+ * </ul>
+ *
+ * <h4>Client Responsibilities:</h4>
+ * <ul>
+ * <li>run each build within its own context, and bind its worker threads to that context (see within)</li>
+ * </ul>
+ */
+public class BuildContext implements Logging {
+
+    private BuildContext(String name) { this.name = name; }
+    public static BuildContext named(String name) { return new BuildContext(name); }
+
+    private static final BuildContext Default = named("default");
+    public static BuildContext standard() { return Default; }
+
+    private static final ThreadLocal<BuildContext> BoundContext = new ThreadLocal();
+    public static BuildContext current() { BuildContext c = BoundContext.get(); return hasSome(c) ? c : Default; }
+
+    private final String name;
+    public String name() { return this.name; }
+
+    private volatile Site site;
+    public Site site() { return this.site; }
+    public BuildContext withSite(Site site) { this.site = site; return this; }
+
+    private final ConcurrentHashMap<Class<?>, Object> parts = new ConcurrentHashMap();
+
+    /**
+     * Returns a part of this context, made on first use.
+     * @param partType the type of a part, which serves as its key
+     * @param factory makes the part, without needing any other part
+     * @return the part of this context
+     */
+    public <PartType> PartType part(Class<PartType> partType, Supplier<PartType> factory) {
+        Object result = parts.get(partType);
+        if (hasNo(result)) result = parts.computeIfAbsent(partType, type -> factory.get());
+        return partType.cast(result); }
+
+    public void run(Runnable task) { call(() -> { task.run(); return null; }); }
+    public <ResultType> ResultType call(Supplier<ResultType> task) {
+        BuildContext prior = BoundContext.get();
+        BoundContext.set(this);
+        try { return task.get(); }
+        finally { if (hasSome(prior)) BoundContext.set(prior); else BoundContext.remove(); } }
+
+    public Runnable within(Runnable task) { return () -> run(task); } // for another thread
+
+    @Override public String toString() { return getClass().getSimpleName() + Colon + name(); }
+
+} // BuildContext
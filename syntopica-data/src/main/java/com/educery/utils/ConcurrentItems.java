@@ -0,0 +1,89 @@
+package com.educery.utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import static com.educery.utils.Utils.*;
+
+/**
+ * Contains the items of a concurrent registry, which several threads may register and find concurrently, without a lock.
+ * Registers each item atomically (see ConcurrentHashMap.computeIfAbsent), so the first item registered
+ * under a key wins, even when several threads register that key at once.
+ * Numbers each registration in sequence, and lists its items in that order.
+ *
+ * <h4>ConcurrentItems Responsibilities:</h4>
+ * <ul>
+ * <li>knows the registered items, their keys, and their registration sequence</li>
+ * <li>registers an item, unless its key is already registered</li>
+ * <li>provides an item given its key</li>
+ * <li>hands out an immutable view of its items, in registration order, cached until the items change</li>
+ * </ul>
+ *
+ * @param <ItemType> an item type
+ */
+class ConcurrentItems<ItemType extends Registry.KeySource> implements Registry.Items<ItemType> {
+
+    ConcurrentItems() { } // see Registry.concurrent
+
+    /**
+     * A registered item, and its place in the registration sequence.
+     */
+    static class Entry<ItemType> {
+
+        final long sequence; final ItemType item;
+        Entry(long sequence, ItemType item) { this.sequence = sequence; this.item = item; }
+
+    } // Entry
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong changeCount = new AtomicLong();
+    private final ConcurrentHashMap<String, Entry<ItemType>> entries = new ConcurrentHashMap();
+
+    @Override public ItemType putIfAbsent(String key, ItemType item) {
+        Entry<ItemType> entry = entries.get(key); // most keys get registered just once
+        if (hasNo(entry)) {
+            entry = entries.computeIfAbsent(key, k -> new Entry(sequence.getAndIncrement(), item));
+            if (entry.item == item) { changeCount.incrementAndGet(); return null; }
+        }
+        return entry.item; }
+
+    @Override public ItemType remove(String key) {
+        Entry<ItemType> result = entries.remove(key);
+        if (hasNo(result)) return null;
+        changeCount.incrementAndGet();
+        return result.item; }
+
+    @Override public ItemType get(String key) {
+        Entry<ItemType> result = entries.get(key);
+        return hasSome(result) ? result.item : null; }
+
+    @Override public int size() { return entries.size(); }
+    @Override public void clear() { entries.clear(); changeCount.incrementAndGet(); }
+
+    /**
+     * An immutable list of items, and the change count when listed.
+     */
+    static class View<ItemType> {
+
+        final long changeCount; final List<ItemType> items;
+        View(long changeCount, List<ItemType> items) { this.changeCount = changeCount; this.items = items; }
+
+    } // View
+
+    private volatile View<ItemType> itemView;
+    private List<Entry<ItemType>> sortedEntries() {
+        List<Entry<ItemType>> results = new ArrayList(entries.values());
+        results.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        return results; }
+
+    @Override public List<ItemType> items() { // cached until the next change
+        long changes = changeCount.get(); // read before listing, so a concurrent change forces another listing
+        View<ItemType> view = this.itemView;
+        if (hasSome(view) && view.changeCount == changes) return view.items;
+        List<ItemType> results = Collections.unmodifiableList(mapList(sortedEntries(), entry -> entry.item));
+        this.itemView = new View(changes, results);
+        return results; }
+
+    @Override public List<String> keys() { return mapList(items(), item -> item.getKey().trim()); }
+
+} // ConcurrentItems
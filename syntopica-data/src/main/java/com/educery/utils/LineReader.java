@@ -2,17 +2,19 @@ package com.educery.utils;
 
 import java.io.*;
 import java.util.function.Consumer;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static com.educery.utils.Exceptional.*;
 
 /**
- * Reads lines from a stream.
+ * Reads lines from a stream (decoded as UTF-8), or from some text.
  * @author Nik Boyd <nik.boyd@educery.dev>
  */
 public class LineReader implements Logging {
 
     protected BufferedReader reader;
     protected BufferedReader reader() { return this.reader; }
-    protected LineReader(InputStream s) { this.reader = new BufferedReader(new InputStreamReader(s)); }
+    protected LineReader(InputStream s) { this.reader = new BufferedReader(new InputStreamReader(s, UTF_8)); }
+    protected LineReader(Reader r) { this.reader = new BufferedReader(r); }
 
     public void readLines(Consumer<String> c) { readAllLines(c); }
     protected void readAllLines(Consumer<String> c) {
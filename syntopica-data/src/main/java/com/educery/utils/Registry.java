@@ -4,7 +4,11 @@ import java.util.*;
 import static com.educery.utils.Utils.*;
 
 /**
- * Contains registered items.
+ * Contains registered items, in the order of their registration.
+ * Keeps the items in a linked hash map, so that registering, removing, and finding an item each take constant time.
+ * Hands out an immutable view of its items, cached until the items change.
+ * A plain registry serves one thread at a time. A concurrent registry keeps its items in a ConcurrentItems instead,
+ * so that several threads may register and find them at once.
  *
  * <h4>Registry Responsibilities:</h4>
  * <ul>
@@ -33,41 +37,88 @@ public class Registry<ItemType extends Registry.KeySource> implements Logging {
 
     } // KeySource
 
-    private Registry() { } // prevent external construction
+    /**
+     * Keeps the items of a registry under their (trimmed) keys, in the order of their registration.
+     */
+    static interface Items<ItemType> {
+
+        ItemType putIfAbsent(String key, ItemType item); // returns the item already registered, if any
+        ItemType remove(String key);
+        ItemType get(String key);
+        int size();
+        void clear();
+        List<String> keys();
+        List<ItemType> items(); // an immutable view, cached until the items change
+
+    } // Items
+
+    private final Items<ItemType> items;
+    private Registry(Items<ItemType> items) { this.items = items; } // prevent external construction
     public Registry<ItemType> with(ItemType item) { register(item); return this; }
     public Registry<ItemType> without(ItemType item) { remove(item); return this; }
-    public static <ItemType extends Registry.KeySource> Registry<ItemType> empty() { return new Registry(); }
+    public static <ItemType extends Registry.KeySource> Registry<ItemType> empty() { return new Registry(new LinkedItems()); }
+    public static <ItemType extends Registry.KeySource> Registry<ItemType> concurrent() { return new Registry(new ConcurrentItems()); }
 
     static final String[] NoItems = { };
-    private final ArrayList<String> order = emptyList();
-    private List<String> order() { return this.order; }
-    public String[] getItemOrder() { return unwrap(order(), NoItems); }
+    public String[] getItemOrder() { return unwrap(items().keys(), NoItems); }
 
-    private final HashMap<String, ItemType> items = new HashMap();
-    private Map<String, ItemType> items() { return this.items; }
+    private Items<ItemType> items() { return this.items; }
     public ItemType register(ItemType item) { return addItem(item); }
     private ItemType addItem(ItemType item) { if (!okKey(item)) return item; 
-        if (!hasItem(item.getKey())) adopt(item); return items().get(item.getKey()); }
+        ItemType prior = items().putIfAbsent(item.getKey().trim(), item);
+        return hasSome(prior) ? prior : item; }
 
     public void remove(ItemType item) { if (okKey(item)) {
-        if (hasItem(item.getKey())) orphan(item); else reportMissing(item); } }
-
-    private void orphan(ItemType item) { String key = item.getKey().trim(); order().remove(key); items().remove(key); }
-    private void adopt(ItemType item) { String key = item.getKey().trim(); items().put(key, item); order().add(key); }
+        if (hasNo(items().remove(item.getKey().trim()))) reportMissing(item); } }
 
     public boolean okKey(String key) { return !noKey(key); }
     public boolean okKey(ItemType item) { return hasSome(item) && okKey(item.getKey()); }
     public boolean noKey(String key) { return hasNo(key) || key.trim().isEmpty(); }
-    public boolean hasItem(String key) { return okKey(key) && items().containsKey(key.trim()); }
+    public boolean hasItem(String key) { return hasSome(getItem(key)); }
     public boolean hasItem(ItemType item) { return hasSome(item) && hasItem(item.getKey()); }
-    public boolean isEmpty() { return items().isEmpty(); }
-    public void clear() { items().clear(); order().clear(); }
+    public boolean isEmpty() { return items().size() == 0; }
+    public void clear() { items().clear(); }
     public int countItems() { return items().size(); }
 
-    public ItemType getItem(String key) { return noKey(key) ? null : items().get(key.trim()); }
-    public List<ItemType> getItems() { return buildList(list -> order().forEach((key) -> list.add(items().get(key)))); }
+    public ItemType getItem(String key) { // keys get trimmed only when needed
+        if (hasNo(key)) return null;
+        ItemType result = items().get(key);
+        if (hasSome(result)) return result;
+        String trimmed = key.trim();
+        return trimmed == key ? null : items().get(trimmed); }
+
+    public List<ItemType> getItems() { return items().items(); }
 
     static final String MissingItem = "can't find an item: '%s'";
     private void reportMissing(ItemType item) { warn(format(MissingItem, item.getKey())); }
 
+    /**
+     * Keeps items in a linked hash map, for one thread at a time.
+     */
+    static class LinkedItems<ItemType> implements Items<ItemType> {
+
+        private final LinkedHashMap<String, ItemType> items = new LinkedHashMap();
+        @Override public ItemType get(String key) { return items.get(key); }
+        @Override public int size() { return items.size(); }
+        @Override public List<String> keys() { return new ArrayList(items.keySet()); }
+
+        @Override public ItemType putIfAbsent(String key, ItemType item) {
+            ItemType prior = items.putIfAbsent(key, item);
+            if (hasNo(prior)) changed(); return prior; }
+
+        @Override public ItemType remove(String key) {
+            ItemType result = items.remove(key);
+            if (hasSome(result)) changed(); return result; }
+
+        @Override public void clear() { items.clear(); changed(); }
+
+        private List<ItemType> itemView; // cached until the items change
+        private void changed() { this.itemView = null; }
+        @Override public List<ItemType> items() {
+            List<ItemType> results = this.itemView;
+            if (hasNo(results)) this.itemView = results = Collections.unmodifiableList(new ArrayList(items.values()));
+            return results; }
+
+    } // LinkedItems
+
 } // Registry
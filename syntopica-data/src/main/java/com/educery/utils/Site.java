@@ -2,6 +2,7 @@ package com.educery.utils;
 
 import java.io.*;
 import java.util.*;
+import static com.educery.utils.Utils.*;
 
 /**
  * Defines protocols for sites.
@@ -9,20 +10,30 @@ import java.util.*;
  */
 public interface Site extends Logging {
 
-    public static interface Source { Site getSite(); void register(Site aSite); }
+    public static interface Source {
+        Site getSite(); void register(Site aSite);
+        default void bind(Site aSite) { register(aSite); } // binds a site to the current thread
+        default void release() { } // releases any site bound to the current thread
+    }
+
+    // registers each site within the current build context
     public static Source SiteSource = new Source() {
-        @Override public Site getSite() { return this.aSite; }
-        @Override public void register(Site aSite) { this.aSite = aSite; }
-        Site aSite;
+        @Override public Site getSite() { Site s = this.boundSite.get(); return hasSome(s) ? s : BuildContext.current().site(); }
+        @Override public void register(Site aSite) { BuildContext.current().withSite(aSite); }
+        @Override public void bind(Site aSite) { this.boundSite.set(aSite); }
+        @Override public void release() { this.boundSite.remove(); }
+        final ThreadLocal<Site> boundSite = new ThreadLocal();
     };
 
     static Site getSite() { return SiteSource.getSite(); }
     default String linkBase() { return Empty; }
     default String imageBase() { return Empty; }
     default File domainFolder() { return null; }
+    BriefIndex briefIndex(); // the briefs of the domain folder, listed once by each site
 
     default Map<String, String> topicLinks() { return new HashMap(); }
     default Map<String, String> pluralLinks() { return new HashMap(); }
+    default String linkTopics(String text) { return text; }
 
     static final String MarkDown = ".md";
     static final String HyperText = ".html";
@@ -0,0 +1,475 @@
+package com.educery.concept.models;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.lang.management.*;
+import java.util.concurrent.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import com.educery.concepts.*;
+import com.educery.facts.*;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.*;
+import com.educery.utils.Logging;
+import com.educery.utils.BuildContext;
+import com.educery.utils.Exceptional;
+import static com.educery.utils.Utils.mapList;
+
+/**
+ * Confirms that lean and two stage parsing build the same models as parsing with a tree and full prediction,
+ * and compares their heap use and throughput.
+ */
+public class FactParserTest implements Logging {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    static final String Sample = "/sample/domain.txt";
+    File sampleFile() throws Exception { return new File(getClass().getResource(Sample).toURI()); }
+
+    static int countFacts(Domain d) {
+        return d.getTopics().getItems().stream().mapToInt(t -> t.facts().countItems()).sum(); }
+
+    @Test public void leanParseMatchesTreeParse() throws Exception {
+        FactParser tree = new FactParser(sampleFile()).keepingTree();
+        tree.parseTokens();
+        Domain treeDomain = Domain.current();
+        assertNotNull(tree.parseTree());
+
+        FactParser lean = new FactParser(sampleFile());
+        lean.parseTokens();
+        Domain leanDomain = Domain.current();
+        assertNull(lean.parseTree());
+
+        assertNotSame(treeDomain, leanDomain);
+        assertArrayEquals(treeDomain.getTopics().getItemOrder(), leanDomain.getTopics().getItemOrder());
+        assertEquals(countFacts(treeDomain), countFacts(leanDomain));
+        assertTrue(countFacts(leanDomain) > 0);
+    }
+
+    @Test public void fallsBackOnlyForErrors() throws Exception {
+        int fallbacks = FactParser.countFallbacks();
+        new FactParser(writeCorpus(1000)).parseTokens();
+        assertEquals(fallbacks, FactParser.countFallbacks());
+
+        new FactParser(sampleFile()).parseTokens(); // the sample contains a syntax error
+        Domain twoStage = Domain.current();
+        assertEquals(fallbacks + 1, FactParser.countFallbacks());
+
+        new FactParser(sampleFile()).withFullPrediction().parseTokens();
+        Domain full = Domain.current();
+        assertArrayEquals(full.getTopics().getItemOrder(), twoStage.getTopics().getItemOrder());
+        assertEquals(countFacts(full), countFacts(twoStage));
+    }
+
+    @Test public void fallbackLeavesNoPartialDomain() throws Exception {
+        BuildContext.named("fallback").run(() -> {
+            Domain prior = Domain.current();
+            Exceptional.runLoudly(() -> new FactParser(sampleFile()).parseTokens()); // the sample contains a syntax error
+            Domain parsed = Domain.current();
+            assertNotSame(prior, parsed);
+            assertSame(parsed, Domain.find(parsed.getName()));
+        });
+    }
+
+    @Test public void fallsBackForLexerErrors() throws Exception {
+        int fallbacks = FactParser.countFallbacks();
+        File facts = writeFacts("lexical.txt", "Domain named: lexical.", "", "governor governs: ` business.", "governor guides: business.");
+        FactParser parser = new FactParser(facts);
+        parser.parseTokens();
+        assertEquals(fallbacks + 1, FactParser.countFallbacks());
+        assertTrue(parser.errorCount() > 0);
+    }
+
+    @Test public void streamedParseMatchesFileParse() throws Exception {
+        new FactParser(sampleFile()).parseTokens();
+        Domain mapped = Domain.current();
+        try (InputStream stream = new FileInputStream(sampleFile())) { FactParser.from(stream, "stdin").parseTokens(); }
+        Domain streamed = Domain.current();
+        assertArrayEquals(mapped.getTopics().getItemOrder(), streamed.getTopics().getItemOrder());
+        assertEquals(countFacts(mapped), countFacts(streamed));
+    }
+
+    @Test public void mappedStreamDecodesUTF8() throws Exception {
+        String text = "caf\u00e9 \u20ac5 \ud83d\ude00 end.\n";
+        File file = folder.newFile("mapped.txt");
+        writeStringToFile(file, "\ufeff" + text, UTF_8);
+
+        CharStream expected = CharStreams.fromString(text);
+        CharStream mapped = MappedCharStream.from(file);
+        assertEquals(expected.size(), mapped.size());
+        for (int index = 0; index < expected.size(); index++) {
+            assertEquals(expected.LA(1), mapped.LA(1));
+            assertEquals(expected.LA(2), mapped.LA(2));
+            assertEquals(expected.LA(-1), mapped.LA(-1));
+            expected.consume(); mapped.consume();
+        }
+        assertEquals(IntStream.EOF, mapped.LA(1));
+        assertEquals(expected.getText(Interval.of(2, 8)), mapped.getText(Interval.of(2, 8)));
+
+        mapped.seek(5);
+        assertEquals(5, mapped.index());
+        assertEquals(text.codePointAt(text.offsetByCodePoints(0, 5)), mapped.LA(1));
+        assertEquals(text, mapped.toString());
+    }
+
+    File writeFacts(String name, String... lines) throws Exception {
+        File file = folder.newFile(name);
+        writeLines(file, "UTF-8", Arrays.asList(lines));
+        return file; }
+
+    @Test public void mergesStagedFactsInOrder() throws Exception {
+        File first = writeFacts("first.txt", "Domain named: merged.",
+            "actor plays: role.", "kind -> actor.", "actor serves: business.");
+        File second = writeFacts("second.txt", "Domain named: other.",
+            "actor plays: part.", "kind -> agent.", "agent makes: product.");
+
+        Domain merged = FactLoader.from(Arrays.asList(first, second)).withThreads(2).loadDomain();
+        assertEquals("merged", merged.getName());
+        assertEquals(4, merged.countConflicts()); // header, kind defined, kind extends:, actor plays:
+        assertSame(merged, Domain.current());
+
+        Topic actor = merged.getTopics().getItem("actor");
+        assertEquals("actor plays: role.", actor.facts().getItem("plays:").getMessage());
+        assertEquals(2, actor.facts().countItems());
+        assertTrue(merged.getTopics().getItem("kind").isDefined());
+        assertSame(merged, merged.getTopics().getItem("agent").getFacts()[0].domain());
+        assertArrayEquals(new String[] { "actor", "kind", "agent" }, // the subjects of facts, in file order
+            merged.getTopics().getItemOrder());
+    }
+
+    @Test public void indexesReferringFacts() throws Exception {
+        File facts = writeFacts("referred.txt", "Domain named: referred.", "governor governs: business.",
+            "business employs: governors.", "business audits: business.", "auditor audits: business for: business.");
+        new FactParser(facts).parseTokens();
+        Domain domain = Domain.current();
+        FactIndex index = domain.indexFacts();
+        assertEquals(4, index.countFacts());
+
+        Topic business = domain.getTopics().getItem("business");
+        assertEquals(Arrays.asList("governor governs: business.", "auditor audits: business for: business."),
+            mapList(business.getReferringFacts(), fact -> fact.getMessage()));
+        assertEquals(6, index.referencesTo(business).size());
+        assertEquals(1, index.referencesTo(domain.getTopics().getItem("governor")).get(1).getPosition());
+        assertTrue(business.formatBacklink(business.getReferringFacts().get(0)).startsWith("a <a href=\"governor.md\">"));
+    }
+
+    static final int ErrorLine = 1500;
+    File writeChunkedCorpus() throws Exception {
+        File corpus = writeCorpus(2000);
+        List<String> lines = readLines(corpus, "UTF-8");
+        lines.add(700, "\"a comment. that spans.\nlines, and ends. a statement.\"");
+        lines.add(900, "scale := (1.5, 2.25, 10.0).");
+        lines.add(ErrorLine - 2, "broken = holder1 holds: value2."); // after the comment line break
+        writeLines(corpus, "UTF-8", lines);
+        return corpus; }
+
+    String captureErrors(Runnable parse) {
+        PrintStream standard = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errors, true));
+        try { parse.run(); } finally { System.setErr(standard); }
+        return errors.toString(); }
+
+    @Test public void chunkedParseMatchesWholeParse() throws Exception {
+        File corpus = writeChunkedCorpus();
+        assertTrue(FactSplitter.split(corpus, 4096).size() > 5);
+
+        String wholeErrors = captureErrors(() -> new FactParser(corpus).parseTokens());
+        Domain whole = Domain.current();
+        String chunkErrors = captureErrors(() -> FactLoader.from(Arrays.asList(corpus)).withChunks(4096).withThreads(3).loadDomain());
+        Domain chunked = Domain.current();
+
+        assertTrue(wholeErrors, wholeErrors.startsWith("line " + ErrorLine + ":"));
+        assertEquals(wholeErrors, chunkErrors);
+        assertEquals(whole.getName(), chunked.getName());
+        assertArrayEquals(whole.getTopics().getItemOrder(), chunked.getTopics().getItemOrder());
+        assertArrayEquals(whole.getPredicates().getItemOrder(), chunked.getPredicates().getItemOrder());
+        assertEquals(countFacts(whole), countFacts(chunked));
+        assertEquals(0, chunked.countConflicts());
+    }
+
+    @Test public void sendsEachStatementToSink() throws Exception {
+        File facts = writeFacts("sent.txt", "Domain named: sent.",
+            "actor plays: role.", "\"a comment.\"", "kind -> actor.", "group := (actor, kind).", "scale := (1.5, 2).");
+
+        List<Statement> statements = new ArrayList();
+        new FactParser(facts).sendingTo(s -> statements.add(s)).parseTokens();
+        assertEquals(4, statements.size());
+        assertEquals(Statement.Kind.Fact, statements.get(0).kind());
+        assertEquals(Arrays.asList("plays"), statements.get(0).parts());
+        assertEquals(Arrays.asList("actor", "role"), statements.get(0).terms());
+        assertEquals(Statement.Kind.Breed, statements.get(1).kind());
+        assertEquals(4, statements.get(1).line());
+        assertEquals("group", statements.get(2).subject());
+        assertEquals(Arrays.asList("1.5", "2"), statements.get(3).terms());
+        assertTrue(Domain.current().getTopics().isEmpty()); // sent elsewhere, not built
+    }
+
+    @Test public void streamsStatementsOnce() throws Exception {
+        List<Statement> sent = new ArrayList(); // after a fallback, as the sample contains a syntax error
+        new FactParser(sampleFile()).sendingTo(s -> sent.add(s)).parseTokens();
+
+        List<Statement> streamed = new ArrayList();
+        try (InputStream stream = new FileInputStream(sampleFile())) {
+            FactParser.streaming(stream, "stdin").sendingTo(s -> streamed.add(s)).parseTokens();
+        }
+
+        assertEquals(streamed.toString(), sent.toString());
+        assertTrue(sent.size() > 10);
+    }
+
+    File writeScannedCorpus() throws Exception {
+        File corpus = writeCorpus(1000);
+        List<String> lines = readLines(corpus, "UTF-8");
+        lines.add(100, "\"a comment. with periods.\" Big Apple pie serves: city; state as: source of: Fruit.");
+        lines.add(200, "scale := (1.5, 2.25, 10.0). pie looks: at: sky.");
+        lines.add(300, "rule := [ given: x | x > 2 ]. crust := pie bakes: \"in\" oven.");
+        lines.add(400, "Domain2 holds: named2, Alpha\n beta. kind7 -> Holder.");
+        writeLines(corpus, "UTF-8", lines);
+        return corpus; }
+
+    @Test public void scannedParseMatchesGrammarParse() throws Exception {
+        File corpus = writeScannedCorpus();
+        int handoffs = FactScanner.countHandoffs();
+        List<Statement> scanned = new ArrayList();
+        new FactParser(corpus).sendingTo(s -> scanned.add(s)).parseTokens();
+        assertEquals(handoffs + 2, FactScanner.countHandoffs()); // the values and the block
+
+        List<Statement> parsed = new ArrayList();
+        new FactParser(corpus).withoutScanner().sendingTo(s -> parsed.add(s)).parseTokens();
+        assertEquals(parsed.toString(), scanned.toString());
+
+        new FactParser(corpus).parseTokens();
+        Domain scannedDomain = Domain.current();
+        new FactParser(corpus).withoutScanner().parseTokens();
+        Domain parsedDomain = Domain.current();
+        assertArrayEquals(parsedDomain.getTopics().getItemOrder(), scannedDomain.getTopics().getItemOrder());
+        assertArrayEquals(parsedDomain.getPredicates().getItemOrder(), scannedDomain.getPredicates().getItemOrder());
+        assertEquals(countFacts(parsedDomain), countFacts(scannedDomain));
+    }
+
+    static Map<String, Set<String>> factKeys(Domain d) { // the facts of each topic, in any order
+        Map<String, Set<String>> results = new HashMap();
+        for (Topic topic : d.getTopics().getItems()) results.put(topic.getTitle(), new HashSet(Arrays.asList(topic.facts().getItemOrder())));
+        return results; }
+
+    @Test public void buildsSharedDomainConcurrently() throws Exception {
+        List<Statement> statements = new ArrayList();
+        new FactParser(writeCorpus(20000)).sendingTo(s -> statements.add(s)).parseTokens();
+        Domain serial = Domain.named("serial");
+        statements.forEach(s -> s.build());
+
+        Domain shared = Domain.named("shared");
+        int threadCount = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> results = new ArrayList();
+            for (int thread = 0; thread < threadCount; thread++) {
+                int first = thread;
+                results.add(pool.submit(() -> {
+                    Domain.bind(shared);
+                    try { for (int index = first; index < statements.size(); index += threadCount) statements.get(index).build(); }
+                    finally { Domain.release(); }
+                }));
+            }
+            for (Future<?> result : results) result.get();
+        }
+        finally { pool.shutdown(); }
+
+        assertEquals(serial.getTopics().countItems(), shared.getTopics().countItems());
+        assertEquals(factKeys(serial), factKeys(shared));
+        assertEquals(serial.getPredicates().countItems(), shared.getPredicates().countItems());
+    }
+
+    static List<String> describe(Domain d) { // every topic with its facts, and every predicate, in order
+        List<String> results = new ArrayList();
+        results.add(d.getName());
+        results.addAll(Arrays.asList(d.getPredicates().getItemOrder()));
+        for (Topic topic : d.getTopics().getItems()) {
+            results.add(topic.getTitle() + " " + topic.isDefined());
+            for (Fact fact : topic.getFacts()) results.add(fact.getMessage() + " " + fact.getValenceCount());
+        }
+        return results; }
+
+    static List<String> describeIDs(Domain d) { // every topic name and selector, and the IDs of every fact
+        List<String> results = new ArrayList();
+        Symbols symbols = d.symbols();
+        for (int id = 0; id < symbols.countSymbols(); id++) results.add(id + " " + symbols.name(id));
+        for (int id = 0; id < symbols.countSelectors(); id++) results.add(id + " " + symbols.selector(id).getKey());
+        for (Topic topic : d.getTopics().getItems()) for (Fact fact : topic.getFacts()) {
+            StringBuilder ids = new StringBuilder().append(fact.selectorId());
+            for (int index = 0; index < fact.topicCount(); index++) ids.append(' ').append(fact.topicIdAt(index));
+            results.add(ids.toString());
+        }
+        return results; }
+
+    @Test public void snapshotRestoresParsedDomain() throws Exception {
+        File corpus = writeScannedCorpus();
+        new FactParser(corpus).parseTokens();
+        Domain parsed = Domain.current();
+
+        File snapshotFile = folder.newFile("snapshot.bin");
+        DomainSnapshot.from(snapshotFile, "hash").save(parsed);
+        assertNull(DomainSnapshot.from(snapshotFile, "other").loadDomain());
+        assertSame(parsed, Domain.current());
+
+        Domain loaded = DomainSnapshot.from(snapshotFile, "hash").loadDomain();
+        assertSame(loaded, Domain.current());
+        assertNotSame(parsed, loaded);
+        assertEquals(describe(parsed), describe(loaded));
+        assertEquals(describeIDs(parsed), describeIDs(loaded)); // the same IDs
+
+        Topic crust = loaded.getTopics().getItem("crust"); // an alias shares its fact
+        assertSame(crust.getFacts()[0], loaded.getTopics().getItem("pie").facts().getItem("bakes:"));
+        assertSame(loaded, crust.getFacts()[0].domain());
+        assertEquals(Arrays.asList(snapshotFile), Arrays.asList(folder.getRoot().listFiles(f -> f.getName().startsWith("snapshot"))));
+    }
+
+    @Test public void truncatedSnapshotLeavesNoDomain() throws Exception {
+        new FactParser(writeScannedCorpus()).parseTokens();
+        File snapshotFile = folder.newFile("truncated.bin");
+        DomainSnapshot.from(snapshotFile, "hash").save(Domain.current());
+        byte[] bytes = readFileToByteArray(snapshotFile);
+        writeByteArrayToFile(snapshotFile, Arrays.copyOf(bytes, bytes.length - 8));
+
+        BuildContext.named("truncated").run(() -> {
+            Domain prior = Domain.current();
+            assertNull(DomainSnapshot.from(snapshotFile, "hash").loadDomain());
+            assertSame(prior, Domain.current());
+            assertNull(Domain.find("corpus"));
+        });
+
+        for (int count : new int[] { -1, Integer.MAX_VALUE }) { // a corrupt count of strings
+            ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+            corrupt.putInt(16, count); // after the magic, version, and hash
+            writeByteArrayToFile(snapshotFile, corrupt.array());
+            assertNull(DomainSnapshot.from(snapshotFile, "hash").loadDomain());
+        }
+    }
+
+    @Ignore("benchmark") @Test public void compareSnapshotLoading() throws Exception {
+        File corpus = writeCorpus(StatementCount);
+        File snapshotFile = folder.newFile("snapshot.bin");
+        measure("scanned", new FactParser(corpus));
+        DomainSnapshot.from(snapshotFile, "hash").save(Domain.current());
+        for (int pass = 0; pass < 3; pass++) {
+            long start = System.nanoTime();
+            DomainSnapshot.from(snapshotFile, "hash").loadDomain();
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            report(format("loaded snapshot of %d KB in %d ms", snapshotFile.length() >> 10, elapsed));
+        }
+    }
+
+    /**
+     * Generates statements one line at a time, without holding them all.
+     */
+    static class CorpusStream extends InputStream {
+        final int count; int index = 0; byte[] line = "Domain named: streamed.\n".getBytes(UTF_8); int offset = 0;
+        CorpusStream(int count) { this.count = count; }
+        @Override public int read() {
+            if (offset == line.length) {
+                if (index == count) return -1;
+                int n = index++;
+                String statement = Statements[n % Statements.length];
+                line = (String.format(statement, n % 1000, n % 997, n % 991, n % 983) + "\n").getBytes(UTF_8);
+                offset = 0;
+            }
+            return line[offset++];
+        }
+    } // CorpusStream
+
+    @Ignore("benchmark") @Test public void streamWithBoundedHeap() throws Exception {
+        int[] counts = { 0 };
+        InputStream stream = new BufferedInputStream(new CorpusStream(StatementCount));
+        measure("streamed", FactParser.streaming(stream, "generated").sendingTo(s -> counts[0]++));
+        assertEquals(StatementCount, counts[0]);
+    }
+
+    static final String[] Statements = {
+        "holder%d holds: value%d, part%d.",
+        "actor%d serves: holder%d as: source of: value%d.",
+        "kind%d -> holder%d.",
+        "group%d := holder%d.",
+        "agent%d moves: part%d from: holder%d into: kind%d.",
+    };
+
+    static final int StatementCount = 1000000;
+    File writeCorpus(int statementCount) throws Exception {
+        File corpus = folder.newFile("corpus" + statementCount + ".txt");
+        try (PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(corpus)))) {
+            w.println("Domain named: corpus.");
+            for (int index = 0; index < statementCount; index++) {
+                String statement = Statements[index % Statements.length];
+                w.println(format(statement, index % 1000, index % 997, index % 991, index % 983));
+            }
+        }
+        return corpus; }
+
+    @Ignore("benchmark") @Test public void compareThroughput() throws Exception {
+        File corpus = writeCorpus(StatementCount / 4);
+        for (int pass = 0; pass < 3; pass++) { // warm up, then measure
+            measure("full LL", new FactParser(corpus).withoutScanner().withFullPrediction());
+            measure("SLL then LL", new FactParser(corpus).withoutScanner());
+            measure("scanned", new FactParser(corpus));
+        }
+    }
+
+    @Ignore("benchmark") @Test public void compareHeapUse() throws Exception {
+        File corpus = writeCorpus(StatementCount);
+        measure("tree", new FactParser(corpus).keepingTree());
+        measure("lean", new FactParser(corpus));
+    }
+
+    static final int FileCount = 16;
+    static final int[] ThreadCounts = { 1, 2, 4, 8, 16 };
+    @Ignore("benchmark") @Test public void compareThreadScaling() throws Exception {
+        List<File> files = new ArrayList();
+        for (int index = 0; index < FileCount; index++) {
+            File corpus = writeCorpus(StatementCount / 20 + index);
+            files.add(corpus);
+        }
+
+        for (int threads : ThreadCounts) {
+            long start = System.nanoTime();
+            FactLoader.from(files).withThreads(threads).loadDomain();
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            report(format("loaded %d files with %d threads: %d ms", FileCount, threads, elapsed));
+        }
+    }
+
+    @Ignore("benchmark") @Test public void compareChunkedParsing() throws Exception {
+        File corpus = writeCorpus(StatementCount / 4);
+        for (int pass = 0; pass < 3; pass++) { // warm up, then measure
+            measure("whole file", new FactParser(corpus));
+            for (int threads : ThreadCounts) {
+                long start = System.nanoTime();
+                FactLoader.from(Arrays.asList(corpus)).withChunks(1 << 20).withThreads(threads).loadDomain();
+                long elapsed = (System.nanoTime() - start) / 1000000;
+                report(format("chunked parse with %d threads: %d ms", threads, elapsed));
+            }
+        }
+    }
+
+    void measure(String mode, FactParser parser) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(pool -> pool.resetPeakUsage());
+        System.gc();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        parser.parseTokens();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        long peak = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        report(format("%s parse: %d ms, %d MB allocated, %d MB peak heap", mode, elapsed, allocated >> 20, peak >> 20));
+    }
+
+} // FactParserTest
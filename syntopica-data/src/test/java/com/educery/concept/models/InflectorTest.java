@@ -0,0 +1,120 @@
+package com.educery.concept.models;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.apache.commons.io.FileUtils.*;
+
+import com.educery.concepts.*;
+import com.educery.concepts.Number;
+import com.educery.utils.*;
+
+/**
+ * Confirms that the inflector converts subjects just as the prior suffix rules did,
+ * honors irregular forms within its own build context, and measures its throughput.
+ */
+public class InflectorTest implements Logging {
+
+    /**
+     * The prior suffix rules of Number, as a baseline.
+     */
+    static class Baseline {
+
+        static final String[] Plurals = { "sses", "ues", "ies", "ays", };
+        static final String[] PluralFixes = { "ss", "ue", "y", "ay", };
+        static final String[] Singulars = { "ss", "ue", "ay", "y" };
+        static final String[] SingularFixes = { "sses", "ues", "ays", "ies" };
+        static final List<String> Ends = Arrays.asList(
+            "aes", "bs", "cs", "ds", "es", "fs", "gs", "hs", "ies", "js", "ks", "ls", "ms", "ns", "oes",
+            "ps", "qs", "rs", "sses", "ts", "ues", "vs", "ws", "xes", "ays", "zs");
+        static final List<Character> Vowelish = Arrays.asList('a', 'e', 'i', 'o', 'u', 'h');
+
+        static boolean endsPlurally(String s) {
+            String norm = s.trim().toLowerCase(); return Ends.stream().anyMatch(end -> norm.endsWith(end)); }
+
+        static String convert(String subject, String[] suffixes, String[] fixes) {
+            subject = subject.trim();
+            for (int index = 0; index < suffixes.length; index++) if (subject.endsWith(suffixes[index]))
+                return subject.substring(0, subject.length() - suffixes[index].length()) + fixes[index];
+            return endsPlurally(subject) ? subject.substring(0, subject.length() - 1) : subject; }
+
+        static String asSingular(String s) { return convert(s, Plurals, PluralFixes); }
+        static String asPlural(String s) { String result = convert(s, Singulars, SingularFixes);
+            return result.endsWith("s") ? result : result + "s"; }
+
+        static String getArticle(String s) {
+            return endsPlurally(s) ? "some" : Vowelish.contains(s.trim().toLowerCase().charAt(0)) ? "an" : "a"; }
+
+    } // Baseline
+
+    static final String[] Subjects = {
+        "business", "Business", "classes", "values", "value", "days", "day", "boy", "  glasses ", "queue",
+        "data", "houses", "Ideas", "hour", "process", "processes", "activity", "activities", "s", "Xs",
+        "box", "boxes", "toes", "taxes", "fiancé", "résumés", "R2D2", "stakeholder group", "key rules",
+    };
+
+    List<String> subjects() throws Exception {
+        File sample = new File(getClass().getResource("/sample/domain.txt").toURI());
+        Set<String> results = new LinkedHashSet(Arrays.asList(Subjects));
+        for (String word : readFileToString(sample, "UTF-8").split("[^\\p{L}]+")) if (!word.isEmpty()) results.add(word);
+        return new ArrayList(results); }
+
+    @Test public void matchesBaselineRules() throws Exception {
+        Inflector inflector = Inflector.create();
+        for (String subject : subjects()) for (int pass = 0; pass < 2; pass++) { // computed, then cached
+            assertEquals(subject, Baseline.endsPlurally(subject), inflector.endsPlurally(subject));
+            assertEquals(subject, Baseline.asSingular(subject), inflector.asSingular(subject));
+            assertEquals(subject, Baseline.asPlural(subject), inflector.asPlural(subject));
+            assertEquals(subject, Baseline.getArticle(subject), inflector.getArticle(subject));
+        }
+    }
+
+    @Test public void irregularFormsStayWithinTheirContext() {
+        BuildContext context = BuildContext.named("irregular");
+        context.run(() -> {
+            Inflector.current().withIrregular("person", "people");
+            assertEquals("people", Number.asPlural("person"));
+            assertEquals("person", Number.asSingular("people"));
+            assertEquals("people", Number.asPlural("people"));
+            assertTrue(Number.getNumber("people").isPlural());
+            assertEquals("some", Number.getArticle("people"));
+            assertEquals("a", Number.getArticle("person"));
+
+            assertTrue(Number.getNumber("People").isPlural()); // capitalized irregular forms keep their case
+            assertEquals("Person", Number.asSingular("People"));
+            assertEquals("People", Number.asPlural("Person"));
+            assertEquals("People", Number.asPlural("People"));
+            assertEquals("PERSON", Number.asSingular(" PEOPLE "));
+        });
+
+        assertEquals("persons", Number.asPlural("person"));
+        assertEquals("peoples", Number.asPlural("people"));
+        assertFalse(Number.getNumber("people").isPlural());
+    }
+
+    @Ignore("benchmark") @Test public void compareThroughput() throws Exception {
+        List<String> subjects = subjects();
+        Inflector inflector = Inflector.create();
+        for (int pass = 0; pass < 3; pass++) { // warm up, then measure
+            int rounds = 2000; int sum = 0;
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) for (String s : subjects) {
+                sum += Baseline.asSingular(s).length() + Baseline.asPlural(s).length() + Baseline.getArticle(s).length();
+                if (Baseline.endsPlurally(s)) sum++;
+            }
+            long baseline = System.nanoTime();
+            for (int round = 0; round < rounds; round++) for (String s : subjects) {
+                sum -= inflector.asSingular(s).length() + inflector.asPlural(s).length() + inflector.getArticle(s).length();
+                if (inflector.endsPlurally(s)) sum--;
+            }
+            long inflected = System.nanoTime();
+            assertEquals(0, sum);
+
+            long calls = rounds * subjects.size() * 4L;
+            report(format("%d subjects: baseline %d ns, inflector %d ns per call",
+                subjects.size(), (baseline - start) / calls, (inflected - baseline) / calls));
+        }
+    }
+
+} // InflectorTest
@@ -0,0 +1,321 @@
+package com.educery.concept.models;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipFile;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.apache.commons.io.FileUtils.*;
+import org.apache.commons.io.IOUtils;
+
+import com.educery.sites.Main;
+import com.educery.sites.PageOutput;
+import com.educery.sites.ModelSite;
+import com.educery.concepts.Domain;
+import com.educery.concepts.ReferenceIndex;
+import com.educery.utils.*;
+
+/**
+ * Generates model sites from the sample model, and compares their pages.
+ */
+public class ModelSiteTest implements Logging {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    static final String Sample = "/sample/domain.txt";
+    File sampleBase(String baseName) throws Exception {
+        File sampleFolder = new File(getClass().getResource(Sample).toURI()).getParentFile();
+        File baseFolder = folder.newFolder(baseName);
+        copyDirectory(sampleFolder, new File(baseFolder, "briefs"));
+        return baseFolder; }
+
+    File buildSite(String baseName, String... options) throws Exception {
+        File baseFolder = sampleBase(baseName);
+        ArrayList<String> args = new ArrayList();
+        args.add(baseFolder.getPath());
+        args.add("domain");
+        args.addAll(Arrays.asList(options));
+        Main.main(args.toArray(new String[0]));
+        return baseFolder; }
+
+    static final String[] Outputs = { "topics", "images" };
+    void assertSamePages(File expected, File actual) throws Exception {
+        assertTrue(contentEquals(new File(expected, "domain-inventory.md"), new File(actual, "domain-inventory.md")));
+        for (String output : Outputs) {
+            File[] pages = new File(expected, output).listFiles();
+            assertTrue(pages.length > 0);
+            for (File page : pages) {
+                File other = new File(new File(actual, output), page.getName());
+                assertTrue(page.getName(), contentEquals(page, other));
+            }
+            assertEquals(pages.length, new File(actual, output).listFiles().length);
+        }
+    }
+
+    @Test public void parallelPagesMatchSerialPages() throws Exception {
+        File serial = buildSite("serial");
+        File parallel = buildSite("parallel", "--threads=4");
+        assertSamePages(serial, parallel);
+    }
+
+    @Test public void compiledPagesMatchTemplatePages() throws Exception {
+        File templated = buildSite("templated");
+        File compiled = buildSite("compiled", "--compiled", "--threads=2");
+        assertSamePages(templated, compiled);
+    }
+
+    @Test public void archivedSiteMirrorsFolders() throws Exception {
+        File folders = buildSite("folders");
+        File archived = buildSite("archived", "--archive", "--threads=2");
+        File archive = new File(archived, "site.zip");
+        assertEquals(0, new File(archived, "topics").listFiles().length);
+
+        File expanded = folder.newFolder("expanded");
+        List<String> names = new ArrayList();
+        try (ZipFile zip = new ZipFile(archive)) {
+            zip.stream().forEach(entry -> {
+                names.add(entry.getName());
+                File file = new File(expanded, entry.getName());
+                if (entry.isDirectory()) file.mkdirs();
+                else Exceptional.runLoudly(() -> copyInputStreamToFile(zip.getInputStream(entry), file));
+            });
+        }
+        for (int index = 0; index < names.size(); index++) { // each folder precedes its files
+            String name = names.get(index);
+            int slash = name.lastIndexOf('/', name.length() - 2);
+            if (slash > 0) assertTrue(names.subList(0, index).contains(name.substring(0, slash + 1)));
+        }
+        assertSamePages(folders, expanded);
+
+        byte[] first = readFileToByteArray(archive);
+        Main.main(archived.getPath(), "domain", "--archive", "--threads=4");
+        assertArrayEquals(first, readFileToByteArray(archive));
+    }
+
+    @Test public void archiveStreamsSlotsInOrder() throws Exception {
+        File base = folder.newFolder("slots");
+        File archive = new File(base, "slots.zip");
+        PageOutput output = PageOutput.create().archivingTo(archive, base);
+        output.ordered(2, () -> output.write(new File(base, "pages/c.md"), "c\n"));
+        output.ordered(1, () -> { // finished ahead of slot 0, so held back
+            output.write(new File(base, "pages/b.md"), "b\n");
+            output.write(new File(base, "images/b.svg"), "b\n"); });
+        output.ordered(0, () -> output.write(new File(base, "pages/a.md"), "a\n"));
+        output.close();
+
+        List<String> names = new ArrayList();
+        try (ZipFile zip = new ZipFile(archive)) { zip.stream().forEach(entry -> names.add(entry.getName())); }
+        assertEquals(Arrays.asList("pages/", "pages/a.md", "pages/b.md", "images/", "images/b.svg", "pages/c.md"), names);
+    }
+
+    @Test public void largeArchiveHoldsEveryEntry() throws Exception {
+        File base = folder.newFolder("large");
+        File archive = new File(base, "large.zip");
+        PageOutput output = PageOutput.create().archivingTo(archive, base);
+        int count = 70000; // more entries than a zip without its zip64 records holds
+        for (int index = 0; index < count; index++) output.write(new File(base, "pages/p" + index + ".md"), "page " + index + "\n");
+        output.close();
+
+        try (ZipFile zip = new ZipFile(archive)) {
+            assertEquals(count + 1, zip.size()); // and its folder
+            assertEquals("page 4242\n", IOUtils.toString(zip.getInputStream(zip.getEntry("pages/p4242.md")), "UTF-8"));
+        }
+    }
+
+    @Test public void chunkSizesStayInRange() {
+        assertEquals(4096 * 1024, Main.chunkBytes("4096"));
+        assertEquals(Integer.MAX_VALUE / 1024 * 1024, Main.chunkBytes("2097152")); // would overflow an int
+        assertEquals(Integer.MAX_VALUE / 1024 * 1024, Main.chunkBytes("99999999999"));
+        assertEquals(1024, Main.chunkBytes("-5"));
+        assertEquals(4096 * 1024, Main.chunkBytes("lots"));
+    }
+
+    @Test public void splitFactsMatchSingleFacts() throws Exception {
+        File single = buildSite("single");
+        File split = sampleBase("split");
+        File briefs = new File(split, "briefs");
+        List<String> lines = readLines(new File(briefs, "domain.txt"), "UTF-8");
+        int half = lines.size() / 2;
+        while (!lines.get(half).trim().isEmpty()) half++; // split between statements
+        writeLines(new File(briefs, "domain-a.txt"), "UTF-8", lines.subList(0, half));
+        List<String> rest = new ArrayList(lines.subList(half, lines.size()));
+        rest.add(0, lines.get(0)); // the domain header
+        writeLines(new File(briefs, "domain-b.txt"), "UTF-8", rest);
+
+        Main.main(split.getPath(), "domain-a", "domain-b", "--threads=2");
+        assertSamePages(single, split);
+    }
+
+    @Test public void snapshotPagesMatchParsedPages() throws Exception {
+        File parsed = sampleBase("parsed");
+        File snapshot = sampleBase("snapshot");
+        for (File base : Arrays.asList(parsed, snapshot)) { // without the syntax error
+            File facts = new File(new File(base, "briefs"), "domain.txt");
+            List<String> lines = readLines(facts, "UTF-8");
+            lines.removeIf(line -> line.startsWith("improvement ="));
+            writeLines(facts, "UTF-8", lines);
+        }
+
+        Main.main(parsed.getPath(), "domain");
+        Main.main(snapshot.getPath(), "domain", "--snapshot");
+        File snapshotFile = new File(snapshot, ".syntopica-snapshot");
+        assertTrue(snapshotFile.exists());
+        snapshotFile.setLastModified(Past);
+
+        deleteDirectory(new File(snapshot, "topics"));
+        Main.main(snapshot.getPath(), "domain", "--snapshot"); // loads the snapshot
+        assertEquals(Past, snapshotFile.lastModified());
+        assertSamePages(parsed, snapshot);
+    }
+
+    @Test public void pagesDefineOnlyTheirReferences() throws Exception {
+        assertEquals(new HashSet(Arrays.asList("activity", "activities", "value", "quality")), ReferenceIndex.labelsIn(
+            "[model](../README.md#overview) an [Activity][activity], some [activities], a [value][] [quality][]"));
+
+        File base = buildSite("references");
+        for (File page : new File(base, "topics").listFiles()) {
+            String text = readFileToString(page, "UTF-8");
+            Set<String> defined = new HashSet();
+            for (String line : text.split("\n")) if (line.matches("\\[[^]]+\\]: .*")) defined.add(line.substring(1, line.indexOf(']')));
+            Set<String> used = ReferenceIndex.labelsIn(text.substring(0, text.indexOf("&sect;")));
+            assertTrue(page.getName(), used.containsAll(defined)); // nothing defined but unused
+            assertTrue(page.getName(), defined.contains(page.getName().replace(".md", ""))); // its own reference
+        }
+    }
+
+    File extendVision(File baseFolder) throws Exception {
+        File brief = new File(new File(baseFolder, "briefs"), "vision.txt");
+        writeStringToFile(brief, readFileToString(brief, "UTF-8") + "A vision guides a business.\n", "UTF-8");
+        return baseFolder; }
+
+    @Test public void concurrentContextsMatchSeparateBuilds() throws Exception {
+        File single = buildSite("single");
+        File extended = extendVision(sampleBase("extended"));
+        Main.main(extended.getPath(), "domain");
+
+        List<File> bases = Arrays.asList(sampleBase("first"), extendVision(sampleBase("second")));
+        List<BuildContext> contexts = Arrays.asList(BuildContext.named("first"), BuildContext.named("second"));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> results = new ArrayList();
+            for (int index = 0; index < 2; index++) { File base = bases.get(index);
+                results.add(pool.submit(contexts.get(index).within(() -> Main.main(base.getPath(), "domain", "--threads=2"))));
+            }
+            for (Future<?> result : results) result.get();
+        }
+        finally { pool.shutdown(); }
+
+        assertSamePages(single, bases.get(0));
+        assertSamePages(extended, bases.get(1));
+        Domain first = contexts.get(0).call(() -> Domain.current());
+        Domain second = contexts.get(1).call(() -> Domain.current());
+        assertNotSame(first, second);
+        assertNotSame(first, Domain.current());
+        assertEquals(first.getName(), second.getName());
+        assertEquals(bases.get(1).getCanonicalFile(), contexts.get(1).site().domainFolder().getCanonicalFile().getParentFile());
+    }
+
+    @Test public void briefIndexReportsChanges() throws Exception {
+        File briefs = new File(sampleBase("indexed"), "briefs");
+        BriefIndex index = BriefIndex.of(briefs);
+        assertTrue(index.hasBrief("vision"));
+        assertFalse(index.hasBrief("outcome"));
+        assertEquals(new File(briefs, "vision.txt").length(), index.find("vision").size());
+        assertTrue(index.refresh().isEmpty());
+
+        extendVision(briefs.getParentFile());
+        new File(briefs, "vision.txt").setLastModified(Past);
+        writeStringToFile(new File(briefs, "outcome.txt"), "An outcome.\n", "UTF-8");
+        new File(briefs, "mission.txt").delete();
+        assertEquals(new TreeSet(Arrays.asList("mission", "outcome", "vision")), index.refresh());
+        assertTrue(index.hasBrief("outcome"));
+        assertFalse(index.hasBrief("mission"));
+    }
+
+    @Test public void briefIndexPrefetchesText() throws Exception {
+        File briefs = new File(sampleBase("prefetched"), "briefs");
+        String accented = "A résumé of the café vision — naïvely.\n";
+        writeStringToFile(new File(briefs, "vision.txt"), accented, "UTF-8");
+        BriefIndex index = BriefIndex.of(briefs).prefetch(brief -> !brief.file().getName().equals("mission.txt"));
+        assertTrue(index.find("vision").isPrefetched());
+        assertEquals(accented, index.find("vision").text());
+        assertFalse(index.find("vision").isPrefetched()); // dropped once used
+        assertEquals(accented, index.find("vision").text()); // read again, if ever needed
+        assertEquals(readFileToString(new File(briefs, "mission.txt"), "UTF-8"), index.find("mission").text());
+    }
+
+    static final long Past = 1000000000000L;
+    List<File> touchedPages(File baseFolder) {
+        ArrayList<File> results = new ArrayList();
+        for (String output : Outputs) for (File page : new File(baseFolder, output).listFiles()) {
+            if (page.lastModified() != Past) results.add(page);
+        }
+        return results; }
+
+    void agePages(File baseFolder) {
+        for (String output : Outputs) for (File page : new File(baseFolder, output).listFiles()) page.setLastModified(Past); }
+
+    @Test public void keptPagesStayUntouched() throws Exception {
+        File base = buildSite("kept");
+        agePages(base);
+        extendVision(base);
+        Main.main(base.getPath(), "domain", "--keep-unchanged", "--threads=2");
+        List<File> touched = touchedPages(base); // only the vision page, not its diagram
+        touched.removeIf(page -> page.getName().equals("value_measures.svg")); // two facts share this diagram name
+        assertEquals(1, touched.size());
+        assertEquals("vision.md", touched.get(0).getName());
+
+        File full = extendVision(sampleBase("full"));
+        Main.main(full.getPath(), "domain");
+        assertSamePages(full, base);
+    }
+
+    File dropInstrument(File baseFolder) throws Exception {
+        File facts = new File(new File(baseFolder, "briefs"), "domain.txt");
+        List<String> lines = readLines(facts, "UTF-8");
+        lines.removeIf(line -> line.startsWith("instrument "));
+        writeLines(facts, "UTF-8", lines);
+        return baseFolder; }
+
+    @Test public void incrementalBuildRemovesDroppedPages() throws Exception {
+        File base = buildSite("dropped", "--incremental");
+        assertTrue(new File(base, "topics/instrument.md").exists());
+        assertTrue(new File(base, "images/instrument_measures.svg").exists());
+
+        Main.main(dropInstrument(base).getPath(), "domain", "--incremental");
+        assertFalse(new File(base, "topics/instrument.md").exists());
+        assertFalse(new File(base, "images/instrument_measures.svg").exists());
+
+        File full = dropInstrument(sampleBase("full"));
+        Main.main(full.getPath(), "domain");
+        assertSamePages(full, base);
+    }
+
+    @Test public void incrementalBuildSkipsUnchangedPages() throws Exception {
+        File base = buildSite("incremental", "--incremental");
+        agePages(base);
+
+        Main.main(base.getPath(), "domain", "--incremental");
+        assertTrue(touchedPages(base).isEmpty());
+
+        File brief = new File(new File(base, "briefs"), "vision.txt");
+        writeStringToFile(brief, readFileToString(brief, "UTF-8") + "A vision guides a business.\n", "UTF-8");
+        Main.main(base.getPath(), "domain", "--incremental");
+        List<File> touched = touchedPages(base); // the vision page and its diagram
+        assertEquals(2, touched.size());
+        touched.forEach(page -> assertTrue(page.getName(), page.getName().startsWith("vision")));
+
+        BuildContext context = BuildContext.named("prefetch");
+        extendVision(base);
+        context.run(() -> Main.main(base.getPath(), "domain", "--incremental"));
+        assertEquals(1, ((ModelSite) context.site()).briefIndex().countPrefetched()); // only the vision brief
+
+        File full = sampleBase("full");
+        copyFile(brief, new File(new File(full, "briefs"), "vision.txt"));
+        Main.main(full.getPath(), "domain");
+        assertSamePages(full, base);
+    }
+
+} // ModelSiteTest
@@ -0,0 +1,164 @@
+package com.educery.concept.models;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.apache.commons.io.FileUtils.*;
+import freemarker.template.*;
+
+import com.educery.sites.*;
+import com.educery.concepts.*;
+import com.educery.utils.*;
+
+/**
+ * Confirms that the model adapters and the compiled forms render the same pages as the bean wrapper, and measures each.
+ */
+public class ModelWrapperTest implements Logging {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    static final String Sample = "/sample/domain.txt";
+    File sampleBase() throws Exception {
+        File sampleFolder = new File(getClass().getResource(Sample).toURI()).getParentFile();
+        File baseFolder = folder.newFolder("sample");
+        copyDirectory(sampleFolder, new File(baseFolder, "briefs"));
+        return baseFolder; }
+
+    File largeBase(int topicCount) throws Exception {
+        File baseFolder = folder.newFolder("large");
+        StringBuilder facts = new StringBuilder("Domain named: large model.\n\n");
+        Random random = new Random(7);
+        for (int index = 0; index < topicCount; index++) {
+            String subject = name(index);
+            facts.append(subject).append(" holds: ").append(name(random.nextInt(topicCount))).append("s.\n");
+            facts.append(subject).append(" serves: ").append(name(random.nextInt(topicCount)))
+                .append(" for: ").append(name(random.nextInt(topicCount))).append("s.\n");
+        }
+        writeStringToFile(new File(new File(baseFolder, "briefs"), "domain.txt"), facts.toString(), "UTF-8");
+        return baseFolder; }
+
+    static String name(int index) {
+        StringBuilder b = new StringBuilder("topic");
+        do { b.append((char) ('a' + index % 26)); index /= 26; } while (index > 0);
+        return b.toString(); }
+
+    static class Build {
+
+        BuildContext context; ModelSite site; Template form; Configuration beans;
+        Build(File baseFolder) throws Exception {
+            context = BuildContext.named(baseFolder.getName());
+            site = context.call(() -> { Main.main(baseFolder.getPath(), "domain"); return (ModelSite) Site.getSite(); });
+            beans = new Configuration(ModelWrapper.Current);
+            beans.setDirectoryForTemplateLoading(new File(baseFolder, "forms"));
+            beans.setObjectWrapper(new DefaultObjectWrapper(ModelWrapper.Current));
+            form = beans.getTemplate("page-template.md"); }
+
+        List<Topic> topics() { return context.call(() -> site.getDomain().getTopics().getItems()); }
+
+        String renderBeans(Topic topic, String discussion) throws Exception {
+            HashMap<String, Object> rootMap = new HashMap();
+            rootMap.put("topic", topic); rootMap.put("domain", site.getDomain());
+            rootMap.put("discussion", discussion); rootMap.put("pageType", site.pageType()); rootMap.put("site", site);
+            StringWriter writer = new StringWriter(); form.process(rootMap, writer); return writer.toString(); }
+
+        FormCompiler.Form compiled;
+        String renderCompiled(Topic topic, String discussion) {
+            if (compiled == null) compiled = FormCompiler.compile(new File(site.formsFolder(), "page-template.md"),
+                "topic", "domain", "discussion", "pageType", "site");
+            StringBuilder page = new StringBuilder();
+            compiled.render(page, topic, site.getDomain(), discussion, site.pageType(), site);
+            return page.toString(); }
+
+        ModelWrapper wrapper = new ModelWrapper();
+        String renderModels(Topic topic, String discussion) throws Exception {
+            ModelWrapper.Page page = wrapper.page().with("topic", topic).with("domain", site.getDomain())
+                .with("discussion", discussion).with("pageType", site.pageType()).with("site", site);
+            StringWriter writer = new StringWriter(); page.process(form, writer); return writer.toString(); }
+
+    } // Build
+
+    @Test public void adaptersMatchBeans() throws Exception {
+        Build build = new Build(sampleBase());
+        build.context.run(() -> {
+            for (Topic topic : build.topics()) {
+                String discussion = topic.buildDiscussion();
+                String expected = Exceptional.nullOrTryLoudly(() -> build.renderBeans(topic, discussion));
+                assertEquals(topic.getTitle(), expected, Exceptional.nullOrTryLoudly(() -> build.renderModels(topic, discussion)));
+                assertEquals(topic.getTitle(), expected, build.renderCompiled(topic, discussion));
+            }
+
+            // members without adapters fall back to the bean model
+            ModelWrapper.Page page = build.wrapper.page().with("topic", build.topics().get(0));
+            String linkName = Exceptional.nullOrTryLoudly(() -> {
+                StringWriter writer = new StringWriter();
+                new Template("fallback", "${topic.linkName} ${topic.getLinkFileName('.html')}", build.beans).process(page, writer);
+                return writer.toString(); });
+            Topic first = build.topics().get(0);
+            assertEquals(first.getLinkName() + " " + first.getLinkFileName(".html"), linkName);
+
+            // the wrapper reuses the models of the page being rendered
+            boolean[] reused = { false };
+            ModelWrapper.Page rendered = build.wrapper.page().with("topic", first);
+            rendered.with("check", (TemplateMethodModelEx) args -> {
+                reused[0] = build.wrapper.wrap(first) == rendered.get("topic"); return ""; });
+            Exceptional.runLoudly(() -> rendered.process(new Template("reuse", "${topic.title}${check()}", build.beans), new StringWriter()));
+            assertTrue(reused[0]);
+            assertNotSame(Exceptional.nullOrTryLoudly(() -> build.wrapper.wrap(first)),
+                Exceptional.nullOrTryLoudly(() -> build.wrapper.wrap(first))); // outside any page
+        });
+    }
+
+    @Test public void compilesOnlySupportedForms() throws Exception {
+        String form = "<#list items as item>\n  <#if item.hasReferringFacts()>\n${item.title}: ${item.formatReference()}\n  </#if>\n</#list>\n";
+        assertNotNull(FormCompiler.compile(form, "items"));
+        assertEquals("a\nb\n", render(FormCompiler.compile("<#assign x>\na\n</#assign>\n${x}b\n", "unused"), "unused"));
+
+        for (String unsupported : Arrays.asList("${items?size}", "<#if items><#else></#if>", "${other}", "<#list items as i>",
+            "${items.unknownMember()}", "<@macro/>", "<#include \"other.md\">")) {
+            try { FormCompiler.compile(unsupported, "items"); fail(unsupported); }
+            catch (FormCompiler.Unsupported e) { assertNotNull(e.getMessage()); }
+        }
+
+        try { render(FormCompiler.compile("${text}", "text"), 42); fail("a number"); } // formatted by FreeMarker instead
+        catch (FormCompiler.Unsupported e) { assertNotNull(e.getMessage()); }
+    }
+
+    static String render(FormCompiler.Form form, Object... roots) {
+        StringBuilder page = new StringBuilder(); form.render(page, roots); return page.toString(); }
+
+    static final int TopicCount = 5000;
+    @Ignore("benchmark") @Test public void compareRenderTimes() throws Exception {
+        Build build = new Build(largeBase(TopicCount));
+        build.context.run(() -> {
+            List<Topic> topics = build.topics();
+            String[] discussions = new String[topics.size()];
+            for (int index = 0; index < discussions.length; index++) discussions[index] = topics.get(index).buildDiscussion();
+
+            for (int pass = 0; pass < 4; pass++) { // warm up, then measure
+                long start = System.nanoTime();
+                long beanChars = 0;
+                for (int index = 0; index < discussions.length; index++) { int item = index;
+                    beanChars += Exceptional.nullOrTryLoudly(() -> build.renderBeans(topics.get(item), discussions[item])).length();
+                }
+                long middle = System.nanoTime();
+                long modelChars = 0;
+                for (int index = 0; index < discussions.length; index++) { int item = index;
+                    modelChars += Exceptional.nullOrTryLoudly(() -> build.renderModels(topics.get(item), discussions[item])).length();
+                }
+                long end = System.nanoTime();
+                long compiledChars = 0;
+                for (int index = 0; index < discussions.length; index++) {
+                    compiledChars += build.renderCompiled(topics.get(index), discussions[index]).length();
+                }
+                long compiled = System.nanoTime();
+                assertEquals(beanChars, modelChars);
+                assertEquals(beanChars, compiledChars);
+                report(format("%d pages: beans %d ms, adapters %d ms, compiled %d ms", topics.size(),
+                    (middle - start) / 1000000, (end - middle) / 1000000, (compiled - end) / 1000000));
+            }
+        });
+    }
+
+} // ModelWrapperTest
@@ -0,0 +1,115 @@
+package com.educery.concept.models;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import com.educery.utils.*;
+
+/**
+ * Confirms the ordering, identity, and views of plain and concurrent registries,
+ * and measures their operations at several sizes.
+ */
+public class RegistryTest implements Logging {
+
+    static class Item implements Registry.KeySource {
+        final String key;
+        Item(String key) { this.key = key; }
+        @Override public String getKey() { return this.key; }
+    } // Item
+
+    static Item[] items(int count) {
+        Item[] results = new Item[count];
+        for (int index = 0; index < count; index++) results[index] = new Item("item" + index);
+        return results; }
+
+    static List<Registry<Item>> registries() { return Arrays.asList(Registry.empty(), Registry.concurrent()); }
+
+    @Test public void keepsFirstItemsInOrder() { registries().forEach(registry -> keepsFirstItemsInOrder(registry)); }
+    void keepsFirstItemsInOrder(Registry<Item> registry) {
+        Item a = registry.register(new Item("a"));
+        Item b = registry.register(new Item(" b "));
+        registry.register(new Item("c"));
+        assertSame(a, registry.register(new Item("a"))); // the first registration wins
+        assertSame(b, registry.getItem("b"));
+        assertSame(b, registry.getItem(" b"));
+        assertNull(registry.getItem(" "));
+        assertArrayEquals(new String[] { "a", "b", "c" }, registry.getItemOrder());
+
+        registry.remove(new Item("b"));
+        registry.register(new Item("b"));
+        assertArrayEquals(new String[] { "a", "c", "b" }, registry.getItemOrder());
+        assertEquals(3, registry.countItems());
+    }
+
+    @Test public void cachesItemViewUntilChanged() { registries().forEach(registry -> cachesItemViewUntilChanged(registry)); }
+    void cachesItemViewUntilChanged(Registry<Item> registry) {
+        for (Item item : items(10)) registry.register(item);
+        List<Item> view = registry.getItems();
+        assertSame(view, registry.getItems());
+        registry.register(registry.getItem("item3")); // no change
+        assertSame(view, registry.getItems());
+
+        registry.register(new Item("other"));
+        List<Item> changed = registry.getItems();
+        assertNotSame(view, changed);
+        assertEquals(10, view.size()); // a prior view stays as it was
+        assertEquals(11, changed.size());
+        try { changed.add(new Item("added")); fail(); } catch (UnsupportedOperationException ex) { }
+    }
+
+    static final int ThreadCount = 8;
+    @Test public void firstConcurrentItemWins() throws Exception {
+        Registry<Item> registry = Registry.concurrent();
+        ExecutorService pool = Executors.newFixedThreadPool(ThreadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Item>>> results = new ArrayList();
+            for (int thread = 0; thread < ThreadCount; thread++) results.add(pool.submit(() -> {
+                start.await();
+                List<Item> winners = new ArrayList();
+                for (Item item : items(10000)) winners.add(registry.register(item));
+                return winners;
+            }));
+
+            start.countDown();
+            List<Item> first = results.get(0).get();
+            for (Future<List<Item>> result : results) {
+                List<Item> winners = result.get();
+                for (int index = 0; index < winners.size(); index++) assertSame(first.get(index), winners.get(index));
+            }
+
+            assertEquals(10000, registry.countItems());
+            assertEquals(10000, registry.getItems().size());
+            assertEquals(new HashSet(first), new HashSet(registry.getItems()));
+            assertArrayEquals(registry.getItemOrder(), registry.getItems().stream().map(i -> i.getKey()).toArray());
+        }
+        finally { pool.shutdown(); }
+    }
+
+    static final int[] Sizes = { 1000, 10000, 100000, 1000000 };
+    @Ignore("benchmark") @Test public void measureOperations() {
+        for (int pass = 0; pass < 2; pass++) for (int size : Sizes) for (Registry<Item> registry : registries()) {
+            Item[] items = items(size); // warm up, then measure
+            long start = System.nanoTime();
+            for (Item item : items) registry.register(item);
+            long registered = System.nanoTime();
+            int found = 0;
+            for (Item item : items) if (registry.hasItem(item.getKey())) found++;
+            long looked = System.nanoTime();
+            int viewed = 0;
+            for (int index = 0; index < 1000; index++) viewed += registry.getItems().size();
+            long listed = System.nanoTime();
+            for (int index = 0; index < size; index += 10) registry.remove(items[index]);
+            long removed = System.nanoTime();
+            assertEquals(size, found);
+            assertEquals(size * 1000L, viewed);
+
+            report(format("%s %d items: register %d ns, find %d ns, remove %d ns per item, getItems %d us per call",
+                registry.getClass().getSimpleName(), size, (registered - start) / size, (looked - registered) / size,
+                (removed - listed) / (size / 10), (listed - looked) / 1000000));
+        }
+    }
+
+} // RegistryTest
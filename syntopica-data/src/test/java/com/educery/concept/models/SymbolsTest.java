@@ -0,0 +1,75 @@
+package com.educery.concept.models;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import com.educery.concepts.*;
+import static com.educery.concept.models.TopicGraphTest.*;
+
+/**
+ * Confirms that the facts of a domain share topic IDs by singular name, and selector IDs by key,
+ * and that merging a staged domain maps its IDs to those of the merged domain.
+ */
+public class SymbolsTest {
+
+    static Fact factOf(Domain domain, String topicName, String selectorKey) {
+        return domain.getTopics().getItem(topicName).facts().getItem(selectorKey); }
+
+    @Test public void pluralTermsShareTopicIDs() {
+        Domain domain = buildDomain("plural", () -> {
+            fact("mission", "aligns", "activities");
+            fact("activity", "supports", "mission");
+        });
+        Fact aligns = factOf(domain, "mission", "aligns:");
+        Fact supports = factOf(domain, "activity", "supports:");
+        assertEquals(aligns.topicIdAt(1), supports.topicIdAt(0));
+        assertEquals(aligns.topicIdAt(0), supports.topicIdAt(1));
+        assertEquals(2, domain.symbols().countSymbols());
+
+        assertEquals("activities", aligns.getTopic(1)); // as written
+        assertTrue(aligns.numberAt(1).isPlural());
+        assertEquals("activity", supports.getTopic(0));
+        assertEquals("activity", domain.symbols().name(aligns.topicIdAt(1)));
+        assertSame(domain.getTopics().getItem("activity"), aligns.topicAt(1));
+
+        Symbols symbols = domain.symbols();
+        assertEquals(2, symbols.countSelectors());
+        assertEquals(aligns.selectorId(), symbols.findSelector("aligns:"));
+        assertSame(aligns.predicate(), symbols.selector(aligns.selectorId()));
+        assertEquals(aligns.selectorId(), domain.buildGraph().selectorIdOf("aligns:"));
+        assertEquals(-1, domain.topicGraph().selectorIdOf("missing:"));
+    }
+
+    @Test public void mergeMapsStagedIDs() {
+        Domain merged = buildDomain("merged", () -> fact("vision", "guides", "mission")); // vision 0, mission 1, guides: 0
+        Domain stage = Domain.staged("merged");
+        Domain.bind(stage);
+        try {
+            fact("mission", "aligns", "activities"); // mission 0, activity 1, aligns: 0
+            fact("vision", "inspires", "missions"); // vision 2, inspires: 1
+        }
+        finally { Domain.release(); }
+
+        Fact aligns = factOf(stage, "mission", "aligns:");
+        Fact inspires = factOf(stage, "vision", "inspires:");
+        assertArrayEquals(new int[] { 0, 0, 1 }, new int[] { aligns.selectorId(), aligns.topicIdAt(0), aligns.topicIdAt(1) });
+        assertArrayEquals(new int[] { 1, 2, 0 }, new int[] { inspires.selectorId(), inspires.topicIdAt(0), inspires.topicIdAt(1) });
+
+        merged.merge(stage, "stage");
+        assertSame(aligns, factOf(merged, "mission", "aligns:")); // moved, and remapped
+        assertSame(inspires, factOf(merged, "vision", "inspires:"));
+        assertSame(merged, aligns.domain());
+        assertSame(merged, inspires.domain());
+        assertArrayEquals(new int[] { 1, 1, 2 }, new int[] { aligns.selectorId(), aligns.topicIdAt(0), aligns.topicIdAt(1) });
+        assertArrayEquals(new int[] { 2, 0, 1 }, new int[] { inspires.selectorId(), inspires.topicIdAt(0), inspires.topicIdAt(1) });
+
+        Symbols symbols = merged.symbols();
+        assertEquals("activity", symbols.name(aligns.topicIdAt(1)));
+        assertEquals("activities", aligns.getTopic(1));
+        assertEquals("inspires:", symbols.selector(inspires.selectorId()).getKey());
+        assertSame(merged.getTopics().getItem("mission"), inspires.topicAt(1));
+        assertEquals(3, symbols.countSymbols());
+        assertEquals(3, symbols.countSelectors());
+    }
+
+} // SymbolsTest
@@ -0,0 +1,93 @@
+package com.educery.concept.models;
+
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import com.educery.concepts.*;
+import com.educery.utils.*;
+
+/**
+ * Confirms the forward and reverse adjacency of a topic graph, and measures its build time and size.
+ */
+public class TopicGraphTest implements Logging {
+
+    static Domain buildDomain(String name, Runnable facts) {
+        return BuildContext.named(name).call(() -> { Domain result = Domain.named(name); facts.run(); return result; }); }
+
+    static void fact(String subject, String verb, String... others) {
+        List<String> parts = new ArrayList(Arrays.asList(verb));
+        for (int index = 1; index < others.length; index++) parts.add("for");
+        Selector.withParts(parts).buildFact(subject, others); }
+
+    @Test public void connectsTopicsBothWays() {
+        Domain domain = buildDomain("graph", () -> {
+            fact("governor", "governs", "business");
+            fact("governor", "serves", "business", "vision");
+            fact("business", "employs", "governors");
+            fact("mission", "aligns", "activities");
+        });
+        TopicGraph graph = domain.buildGraph();
+        assertSame(graph, domain.topicGraph());
+        assertEquals(5, graph.countTopics()); // including the topics named only as arguments
+        assertEquals(5, graph.countEdges());
+
+        int governor = graph.idOf(domain.getTopics().getItem("governor"));
+        int business = graph.idOf(domain.getTopics().getItem("business"));
+        assertEquals(3, graph.outDegree(governor));
+        assertEquals(1, graph.inDegree(governor));
+        assertEquals(2, graph.inDegree(business));
+
+        List<String> sources = new ArrayList();
+        graph.forEachSource(business, (source, selector) ->
+            sources.add(graph.topic(source).getTitle() + " " + graph.selector(selector).getKey()));
+        assertEquals(Arrays.asList("governor governs:", "governor serves:for:"), sources);
+
+        List<String> neighbours = new ArrayList();
+        graph.neighboursOf(graph.topic(governor)).forEach(topic -> neighbours.add(topic.getTitle()));
+        assertEquals(Arrays.asList("business", "vision"), neighbours);
+
+        int aligns = graph.selectorIdOf("aligns:");
+        int[] connected = graph.topicsConnectedBy(aligns);
+        assertEquals(2, connected.length);
+        assertEquals("mission", graph.topic(connected[0]).getTitle());
+        assertEquals("activity", graph.topic(connected[1]).getTitle());
+    }
+
+    static final int EdgeCount = 1000000;
+    @Ignore("benchmark") @Test public void measureMillionEdges() {
+        int topicCount = EdgeCount / 10;
+        Domain domain = buildDomain("million", () -> {
+            Random random = new Random(7);
+            for (int edge = 0; edge < EdgeCount; edge += 2) {
+                fact("topic" + random.nextInt(topicCount), "verb" + random.nextInt(100),
+                    "topic" + random.nextInt(topicCount), "topic" + random.nextInt(topicCount));
+            }
+        });
+
+        for (int pass = 0; pass < 3; pass++) { // warm up, then measure
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            long before = runtime.totalMemory() - runtime.freeMemory(); // holds any prior graph, after the first pass
+            long start = System.nanoTime();
+            TopicGraph graph = domain.buildGraph();
+            long built = System.nanoTime();
+            System.gc();
+            long after = runtime.totalMemory() - runtime.freeMemory();
+
+            long walking = System.nanoTime();
+            long degrees = 0;
+            for (int topic = 0; topic < graph.countTopics(); topic++) degrees += graph.degree(topic);
+            long[] visits = { 0 };
+            for (int topic = 0; topic < graph.countTopics(); topic++) graph.forEachTarget(topic, (t, s) -> visits[0]++);
+            long walked = System.nanoTime();
+            assertEquals(2L * graph.countEdges(), degrees);
+            assertEquals(graph.countEdges(), visits[0]);
+
+            report(format("%d topics, %d edges: built in %d ms, walked in %d ms, %d MB of arrays"
+                + (pass == 0 ? ", %d MB retained" : ""), graph.countTopics(), graph.countEdges(), (built - start) / 1000000,
+                (walked - walking) / 1000000, graph.countBytes() / (1 << 20), (after - before) / (1 << 20)));
+        }
+    }
+
+} // TopicGraphTest
@@ -0,0 +1,127 @@
+package com.educery.concept.models;
+
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import com.educery.concepts.*;
+import com.educery.concepts.Number;
+import com.educery.utils.*;
+import static org.apache.commons.lang3.StringUtils.*;
+
+/**
+ * Confirms the topic linking of discussions, and compares its speed with the prior serial linking.
+ */
+public class TopicLinkerTest implements Logging {
+
+    static final String[] Subjects = { "actor", "big actor", "activity", "business", "value" };
+    static Map<String, String> topicLinks() { return linksFor(Number.SingularNumber); }
+    static Map<String, String> pluralLinks() { return linksFor(Number.PluralNumber); }
+    static Map<String, String> linksFor(Number n) {
+        HashMap<String, String> results = new HashMap();
+        for (String subject : Subjects) results.put(subject, linkFor(subject, n));
+        return results; }
+
+    static String linkFor(String subject, Number n) {
+        String title = n.isPlural() ? Number.asPlural(subject) : subject;
+        return "[" + title + "][" + subject.replace(" ", ".") + "]"; }
+
+    static TopicLinker linker() { return TopicLinker.from(topicLinks(), pluralLinks()); }
+
+    @Test public void linksLongestNames() {
+        assertEquals("a [big actor][big.actor] and an [actor][actor].", linker().link("a big actor and an actor."));
+        assertEquals("some [activities][activity] for [business][business]", linker().link("some activities for business"));
+        assertEquals("[Value][Value] drives [actors][actor]", linker().link("Value drives actors"));
+    }
+
+    @Test public void skipsPartialWords() {
+        String text = "factors and reactors with actor.md and actor_list, see images/actor.svg";
+        assertEquals(text, linker().link(text));
+    }
+
+    @Test public void skipsExistingLinks() {
+        assertEquals("see [the actor](actor.md) and [business][business]",
+            linker().link("see [the actor](actor.md) and business"));
+        assertEquals("an [actor] and another actor", linker().link("an [actor] and another actor"));
+        assertEquals("<img src=\"value.svg\" alt=\"value\" /> [value][value]",
+            linker().link("<img src=\"value.svg\" alt=\"value\" /> value"));
+    }
+
+    static final int Repeats = 20;
+    static final int TopicCount = 3000;
+    @Ignore("benchmark") @Test public void compareSerialLinking() {
+        ArrayList<String> subjects = new ArrayList();
+        for (int index = 0; index < TopicCount; index++) subjects.add("topic" + Integer.toString(index, 26));
+        HashMap<String, String> topicLinks = new HashMap();
+        HashMap<String, String> pluralLinks = new HashMap();
+        subjects.forEach(s -> { topicLinks.put(s, "[" + s + "][" + s + "]"); pluralLinks.put(s, "[" + s + "s][" + s + "]"); });
+
+        StringBuilder b = new StringBuilder();
+        Random random = new Random(7);
+        for (int index = 0; index < 400; index++) {
+            b.append(subjects.get(random.nextInt(TopicCount))).append(" relates to some ");
+            b.append(subjects.get(random.nextInt(TopicCount))).append("s.\n");
+        }
+        String text = b.toString();
+
+        long start = System.nanoTime();
+        TopicLinker linker = TopicLinker.from(topicLinks, pluralLinks);
+        long compiled = System.nanoTime();
+        for (int index = 0; index < Repeats; index++) linker.link(text);
+        long linked = System.nanoTime();
+        for (int index = 0; index < Repeats; index++) SerialLinker.link(text, topicLinks, pluralLinks);
+        long serial = System.nanoTime();
+
+        report(format("compiled %d topics in %d ms", TopicCount, (compiled - start) / 1000000));
+        report(format("automaton linked %d texts in %d ms", Repeats, (linked - compiled) / 1000000));
+        report(format("serial chain linked %d texts in %d ms", Repeats, (serial - linked) / 1000000));
+    }
+
+    /**
+     * The prior chain of fixLeadingSubject, fixPluralSubject, and fixSubjectLinks, for comparison.
+     */
+    static class SerialLinker {
+
+        static String link(String text, Map<String, String> topicLinks, Map<String, String> pluralLinks) {
+            List<String> keys = new ArrayList(topicLinks.keySet());
+            Collections.sort(keys, (a, b) -> b.length() - a.length());
+            for (String subject : keys) {
+                text = fixLeadingSubject(subject, text, topicLinks.get(subject));
+                text = fixPluralSubject(subject, text, pluralLinks.get(subject));
+                text = fixSubjectLink(subject, text, topicLinks.get(subject));
+            }
+            return text;
+        }
+
+        static String fixLeadingSubject(String subject, String text, String topicLink) {
+            String cap = capitalize(subject);
+            String capLink = topicLink.replace("[" + subject.charAt(0), "[" + cap.charAt(0));
+            if (!text.contains(cap)) return text;
+            if (text.contains("[" + cap)) return text;
+            if (text.contains(cap + "]")) return text;
+            return text.replace(cap + " ", capLink + " ");
+        }
+
+        static String fixPluralSubject(String subject, String text, String pluralLink) {
+            String plural = Number.asPlural(subject);
+            if (!text.contains(plural)) return text;
+            if (text.contains("[" + plural)) return text;
+            if (text.contains(plural + "]")) return text;
+            return text.replace(plural, pluralLink);
+        }
+
+        static String fixSubjectLink(String subject, String text, String topicLink) {
+            if (!text.contains(subject)) return text;
+            if (text.contains("[" + Number.asPlural(subject))) return text;
+            if (text.contains("[" + Number.asSingular(subject))) return text;
+            if (text.contains(Number.asPlural(subject) + "]")) return text;
+            if (text.contains(Number.asSingular(subject) + "]")) return text;
+
+            text = text.replace(" " + subject, " " + topicLink);
+            text = text.replace(subject + " ", topicLink + " ");
+            return text;
+        }
+
+    } // SerialLinker
+
+} // TopicLinkerTest